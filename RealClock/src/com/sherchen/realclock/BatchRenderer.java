@@ -0,0 +1,260 @@
+package com.sherchen.realclock;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.PorterDuff;
+
+/**
+ * Renders a clock face for a list of times without any view or window, for
+ * thumbnails and timelapse previews. The frames are spread over worker
+ * threads, each with its own composed dial layer, hands and frame bitmap
+ * which are kept from one batch to the next, so a frame is one blit of the
+ * dial and the three hands.
+ * <pre>
+ * BatchRenderer renderer = new BatchRenderer(res, FaceConfig.fromStyle(context, R.style.MyFace), 96, 96, 0);
+ * renderer.render(times, sink);
+ * renderer.release();
+ * </pre>
+ */
+public final class BatchRenderer {
+
+	/**
+	 * Takes the frames, called on the worker threads in no particular order.
+	 */
+	public interface FrameSink {
+		/**
+		 * @param frame reused for the next frame of the worker once this returns
+		 */
+		void onFrame(int index, long timeMillis, Bitmap frame) throws IOException;
+	}
+
+	//frames a worker takes at once, small enough to keep all workers busy till the end
+	private static final int CHUNK = 32;
+	//of the heap the app may use, for the chunk buffers of all workers together
+	private static final int PIXELS_BUDGET_DIVISOR = 8;
+
+	private final ExecutorService mExecutor;
+	private final Worker[] mWorkers;
+	//CHUNK, or fewer frames for large sizes so the chunk buffers stay within the budget
+	private final int mChunk;
+
+	/**
+	 * @param threads the number of workers, 0 for one per core
+	 */
+	public BatchRenderer(Resources res, FaceConfig config, int width, int height, int threads) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("bad size " + width + "x" + height);
+		}
+		long frameBytes = (long) width * height * 4;
+		if (frameBytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("bad size " + width + "x" + height);
+		}
+		int count = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		long budget = Runtime.getRuntime().maxMemory() / PIXELS_BUDGET_DIVISOR / count;
+		mChunk = (int) Math.max(1, Math.min(CHUNK, budget / frameBytes));
+		mWorkers = new Worker[count];
+		for (int i = 0; i < count; i++) {
+			mWorkers[i] = new Worker(res, config, width, height);
+		}
+		mExecutor = Executors.newFixedThreadPool(count, new ThreadFactory() {
+			private final AtomicInteger mCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable r) {
+				Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+						r.run();
+					}
+				}, "RealClock-batch-" + mCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Render a frame for every time and hand it to the sink, returns once
+	 * all frames are done.
+	 */
+	public void render(long[] times, FrameSink sink) throws IOException, InterruptedException {
+		run(times, sink, null);
+	}
+
+	/**
+	 * Write the frames in the order of the times as raw pixels to the
+	 * stream, 4 bytes per pixel in RGBA order with premultiplied alpha.
+	 */
+	public void renderRgba(long[] times, OutputStream out) throws IOException, InterruptedException {
+		run(times, null, new OrderedWriter(out));
+	}
+
+	/**
+	 * Free the bitmaps and stop the workers, the renderer cannot be used afterwards.
+	 */
+	public void release() {
+		mExecutor.shutdownNow();
+		for (Worker worker : mWorkers) {
+			worker.release();
+		}
+	}
+
+	private void run(final long[] times, final FrameSink sink, final OrderedWriter writer)
+			throws IOException, InterruptedException {
+		final AtomicInteger nextChunk = new AtomicInteger();
+		final int chunkSize = mChunk;
+		List<Future<Void>> results = new ArrayList<Future<Void>>(mWorkers.length);
+		for (final Worker worker : mWorkers) {
+			results.add(mExecutor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					try {
+						int chunk;
+						while ((long) (chunk = nextChunk.getAndIncrement()) * chunkSize < times.length) {
+							int start = chunk * chunkSize;
+							int end = Math.min(times.length, start + chunkSize);
+							for (int i = start; i < end; i++) {
+								worker.draw(times[i]);
+								if (writer != null) {
+									worker.copyPixels(i - start, chunkSize);
+								} else {
+									sink.onFrame(i, times[i], worker.mFrame);
+								}
+							}
+							if (writer != null) {
+								writer.write(chunk, worker.mPixels, (end - start) * worker.mFrameBytes);
+							}
+						}
+						return null;
+					} catch (Exception e) {
+						//the chunk of this worker never comes, do not let the others wait for it
+						if (writer != null) {
+							writer.abort();
+						}
+						throw e;
+					}
+				}
+			}));
+		}
+		try {
+			for (Future<Void> result : results) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			//the caller gives up, so do the workers
+			cancel(results, writer);
+			throw e;
+		} catch (ExecutionException e) {
+			cancel(results, writer);
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	private static void cancel(List<Future<Void>> results, OrderedWriter writer) {
+		if (writer != null) {
+			writer.abort();
+		}
+		for (Future<Void> result : results) {
+			result.cancel(true);
+		}
+	}
+
+	/**
+	 * Everything one thread needs to draw a frame, nothing of it is shared.
+	 */
+	private static final class Worker {
+		private final ClockFace mFace;
+		final Bitmap mFrame;
+		private final Canvas mCanvas;
+		final int mFrameBytes;
+		//one chunk of frames for the ordered stream, allocated on first use
+		byte[] mPixels;
+
+		Worker(Resources res, FaceConfig config, int width, int height) {
+			//own hands, a drawable keeps its bounds and must not be shared between threads
+			mFace = new ClockFace(res, config);
+			mFace.setSize(width, height);
+			mFrame = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+			mCanvas = new Canvas(mFrame);
+			mFrameBytes = width * height * 4;
+		}
+
+		void draw(long time) {
+			mCanvas.drawColor(0, PorterDuff.Mode.CLEAR);
+			mFace.draw(mCanvas, time);
+		}
+
+		void copyPixels(int slot, int chunkSize) {
+			if (mPixels == null) {
+				mPixels = new byte[chunkSize * mFrameBytes];
+			}
+			mFrame.copyPixelsToBuffer(ByteBuffer.wrap(mPixels, slot * mFrameBytes, mFrameBytes));
+		}
+
+		void release() {
+			mFrame.recycle();
+			mFace.release();
+		}
+	}
+
+	/**
+	 * Lets the workers write their chunks one after the other in the order
+	 * of the times, a worker ahead waits for the ones before it.
+	 */
+	private static final class OrderedWriter {
+		private final OutputStream mOut;
+		private int mNext;
+		private boolean mAborted;
+
+		OrderedWriter(OutputStream out) {
+			mOut = out;
+		}
+
+		void write(int chunk, byte[] pixels, int length) throws IOException, InterruptedException {
+			synchronized (this) {
+				while (mNext != chunk && !mAborted) {
+					wait();
+				}
+				if (mAborted) {
+					throw new IOException("aborted");
+				}
+			}
+			//only the one worker whose turn it is gets here
+			try {
+				mOut.write(pixels, 0, length);
+			} finally {
+				synchronized (this) {
+					mNext++;
+					notifyAll();
+				}
+			}
+		}
+
+		synchronized void abort() {
+			mAborted = true;
+			notifyAll();
+		}
+	}
+}
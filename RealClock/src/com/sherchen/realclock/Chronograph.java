@@ -0,0 +1,180 @@
+package com.sherchen.realclock;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.SystemClock;
+
+/**
+ * The stopwatch of a clock: the elapsed time and two sub-dials, a 30
+ * minute register at 9 o'clock and a hand turning once a second for the
+ * tenths at 3 o'clock. The faces of the sub-dials are rendered once per
+ * size, a frame only draws the two hands. The elapsed time is taken from
+ * the monotonic clock, so changing the wall time does not disturb it.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+final class Chronograph {
+
+	private static final int MINUTES_PER_TURN = 30;
+	private static final long SECOND_NANOS = 1000000000L;
+	private static final long MINUTE_NANOS = 60 * SECOND_NANOS;
+	//of the radius of the clock, the sub-dials of ZoneDials take the same places
+	static final float SUB_DIAL_DISTANCE = 0.45f;
+	static final float SUB_DIAL_RADIUS = 0.2f;
+
+	private boolean mRunning;
+	private long mStartNanos;
+	private long mAccumulatedNanos;
+
+	private final Paint mFacePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+	private final Paint mHandPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+	private final Paint mTenthHandPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+	private final Rect mMinuteDial = new Rect();
+	private final Rect mTenthDial = new Rect();
+	private Bitmap mMinuteFace;
+	private Bitmap mTenthFace;
+	private int mRadius;
+
+	Chronograph() {
+		mFacePaint.setStyle(Paint.Style.STROKE);
+		mHandPaint.setStyle(Paint.Style.STROKE);
+		mHandPaint.setStrokeCap(Paint.Cap.ROUND);
+		mTenthHandPaint.setStyle(Paint.Style.STROKE);
+		mTenthHandPaint.setStrokeCap(Paint.Cap.ROUND);
+		setColors(0xff000000, 0xffcc0000);
+	}
+
+	void setColors(int faceColor, int tenthColor) {
+		mFacePaint.setColor(faceColor);
+		mHandPaint.setColor(faceColor);
+		mTenthHandPaint.setColor(tenthColor);
+		release();
+	}
+
+	/**
+	 * Nanoseconds of the monotonic clock, elapsedRealtimeNanos needs API 17.
+	 */
+	static long now() {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+			return SystemClock.elapsedRealtimeNanos();
+		}
+		return SystemClock.elapsedRealtime() * 1000000L;
+	}
+
+	boolean isRunning() {
+		return mRunning;
+	}
+
+	void start() {
+		if (!mRunning) {
+			mRunning = true;
+			mStartNanos = now();
+		}
+	}
+
+	void stop() {
+		if (mRunning) {
+			mAccumulatedNanos += now() - mStartNanos;
+			mRunning = false;
+		}
+	}
+
+	void reset() {
+		mAccumulatedNanos = 0;
+		mStartNanos = now();
+	}
+
+	long getElapsedNanos() {
+		return mRunning ? mAccumulatedNanos + now() - mStartNanos : mAccumulatedNanos;
+	}
+
+	static long getElapsedMinutes(long elapsedNanos) {
+		return elapsedNanos / MINUTE_NANOS;
+	}
+
+	/**
+	 * Place the sub-dials for a clock of the given size.
+	 */
+	void setSize(int width, int height) {
+		int centerX = width / 2;
+		int centerY = height / 2;
+		int clockRadius = Math.min(centerX, centerY);
+		int distance = (int) (clockRadius * SUB_DIAL_DISTANCE);
+		int radius = Math.max(1, (int) (clockRadius * SUB_DIAL_RADIUS));
+		if (radius != mRadius) {
+			release();
+			mRadius = radius;
+		}
+		mMinuteDial.set(centerX - distance - radius, centerY - radius,
+				centerX - distance + radius, centerY + radius);
+		mTenthDial.set(centerX + distance - radius, centerY - radius,
+				centerX + distance + radius, centerY + radius);
+	}
+
+	Rect getMinuteDial() {
+		return mMinuteDial;
+	}
+
+	Rect getTenthDial() {
+		return mTenthDial;
+	}
+
+	void draw(Canvas canvas, long elapsedNanos) {
+		if (mRadius <= 0) {
+			return;
+		}
+		if (mMinuteFace == null) {
+			mMinuteFace = renderFace(MINUTES_PER_TURN, 5);
+			mTenthFace = renderFace(10, 1);
+		}
+		canvas.drawBitmap(mMinuteFace, mMinuteDial.left, mMinuteDial.top, null);
+		canvas.drawBitmap(mTenthFace, mTenthDial.left, mTenthDial.top, null);
+
+		//the register jumps once a minute like a mechanical one
+		float minuteDegrees = getElapsedMinutes(elapsedNanos) % MINUTES_PER_TURN * (360.0f / MINUTES_PER_TURN);
+		float tenthDegrees = elapsedNanos % SECOND_NANOS * (360.0f / SECOND_NANOS);
+		drawHand(canvas, mMinuteDial, minuteDegrees, mHandPaint);
+		drawHand(canvas, mTenthDial, tenthDegrees, mTenthHandPaint);
+	}
+
+	void release() {
+		//left to the collector, the removed view may still be drawn from its display list
+		mMinuteFace = null;
+		mTenthFace = null;
+	}
+
+	private void drawHand(Canvas canvas, Rect dial, float degrees, Paint paint) {
+		paint.setStrokeWidth(Math.max(1.0f, mRadius * 0.08f));
+		double radians = Math.toRadians(degrees);
+		float length = mRadius * 0.8f;
+		float cx = dial.exactCenterX();
+		float cy = dial.exactCenterY();
+		canvas.drawLine(cx, cy, cx + (float) Math.sin(radians) * length,
+				cy - (float) Math.cos(radians) * length, paint);
+	}
+
+	/**
+	 * A ring with the given number of marks, every majorStep one longer.
+	 */
+	private Bitmap renderFace(int marks, int majorStep) {
+		int size = mRadius * 2;
+		Bitmap face = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+		Canvas canvas = new Canvas(face);
+		float stroke = Math.max(1.0f, mRadius * 0.04f);
+		mFacePaint.setStrokeWidth(stroke);
+		canvas.drawCircle(mRadius, mRadius, mRadius - stroke, mFacePaint);
+		for (int i = 0; i < marks; i++) {
+			float inner = mRadius * (i % majorStep == 0 ? 0.7f : 0.82f);
+			double radians = Math.toRadians(i * 360.0 / marks);
+			float sin = (float) Math.sin(radians);
+			float cos = (float) Math.cos(radians);
+			canvas.drawLine(mRadius + sin * inner, mRadius - cos * inner,
+					mRadius + sin * (mRadius - stroke), mRadius - cos * (mRadius - stroke), mFacePaint);
+		}
+		return face;
+	}
+}
@@ -0,0 +1,43 @@
+package com.sherchen.realclock;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.view.View;
+
+/**
+ * Draws the {@link Chronograph} of a {@link RealAnalogClock3} as a child of
+ * the clock. A frame of the running stopwatch invalidates only this view,
+ * so with hardware acceleration only its few drawing operations are
+ * recorded again and the display list of the face is kept. The view covers
+ * the clock, the sub-dials are where the chronograph placed them.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+final class ChronographView extends View {
+
+	private final Chronograph mChronograph;
+	private long mShownMinute;
+
+	ChronographView(Context context, Chronograph chronograph) {
+		super(context);
+		mChronograph = chronograph;
+	}
+
+	/**
+	 * Redraw the tenths sub-dial, and the minute register when its minute
+	 * moved on.
+	 */
+	void invalidateHands() {
+		invalidate(mChronograph.getTenthDial());
+		long minute = Chronograph.getElapsedMinutes(mChronograph.getElapsedNanos());
+		if (minute != mShownMinute) {
+			mShownMinute = minute;
+			invalidate(mChronograph.getMinuteDial());
+		}
+	}
+
+	@Override
+	protected void onDraw(Canvas canvas) {
+		mChronograph.draw(canvas, mChronograph.getElapsedNanos());
+	}
+}
@@ -0,0 +1,212 @@
+package com.sherchen.realclock;
+
+import java.util.TimeZone;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Animatable;
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+
+/**
+ * A running clock face as a Drawable, for places which take a drawable
+ * rather than a view: an ImageView, a background, a menu icon. It draws
+ * through a {@link ClockFace}, the dial is composed once per size.
+ * <p>
+ * While started and visible the drawable schedules itself through its
+ * callback, once a second or every frame in sweep mode, and follows the
+ * level of the {@link PowerGovernor}. A tick only invalidates the drawable,
+ * it never measures or lays out anything. The layer is composed on the
+ * calling thread when the size of the bounds changes. The decisions are
+ * made by {@link ClockTicks}.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+public class ClockDrawable extends Drawable implements Animatable, Runnable {
+
+	private final Context mContext;
+	private final ClockFace mFace;
+	//null for the device time zone
+	private String mTimeZoneId;
+	private boolean mRunning;
+	private boolean mSubscribed;
+	//the level, sweep mode and size, which decide ticking and composing
+	private final ClockTicks mTicks = new ClockTicks();
+
+	public ClockDrawable(Context context, FaceConfig config) {
+		mContext = context.getApplicationContext();
+		mFace = new ClockFace(context.getResources(), config);
+		mTimeZoneId = config.getTimeZone();
+	}
+
+	public ClockFace getFace() {
+		return mFace;
+	}
+
+	/**
+	 * @param timeZoneId an id of {@link TimeZone}, null for the device time zone
+	 */
+	public void setTimeZone(String timeZoneId) {
+		mTimeZoneId = timeZoneId;
+		mFace.setTimeZone(timeZoneId);
+		invalidateSelf();
+	}
+
+	/**
+	 * @param sweep move the second hand every frame instead of once a second
+	 */
+	public void setSweep(boolean sweep) {
+		mTicks.setSweep(sweep);
+		updateFace();
+		if (mRunning) {
+			scheduleNext();
+		}
+	}
+
+	@Override
+	public void start() {
+		if (mRunning) {
+			return;
+		}
+		mRunning = true;
+		subscribe(isVisible());
+		invalidateSelf();
+		scheduleNext();
+	}
+
+	@Override
+	public void stop() {
+		if (!mRunning) {
+			return;
+		}
+		mRunning = false;
+		subscribe(false);
+		unscheduleSelf(this);
+	}
+
+	@Override
+	public boolean isRunning() {
+		return mRunning;
+	}
+
+	@Override
+	public boolean setVisible(boolean visible, boolean restart) {
+		boolean changed = super.setVisible(visible, restart);
+		if (mRunning) {
+			//no ticks for a drawable nobody sees
+			subscribe(visible);
+			if (visible) {
+				invalidateSelf();
+				scheduleNext();
+			} else {
+				unscheduleSelf(this);
+			}
+		}
+		return changed;
+	}
+
+	@Override
+	public void run() {
+		invalidateSelf();
+		scheduleNext();
+	}
+
+	private void scheduleNext() {
+		unscheduleSelf(this);
+		if (!mRunning || !isVisible()) {
+			return;
+		}
+		long delay = mTicks.getNextFrameDelay(System.currentTimeMillis());
+		scheduleSelf(this, SystemClock.uptimeMillis() + delay);
+	}
+
+	private void subscribe(boolean subscribe) {
+		if (subscribe == mSubscribed) {
+			return;
+		}
+		mSubscribed = subscribe;
+		TimeEventHub hub = TimeEventHub.getInstance(mContext);
+		if (subscribe) {
+			hub.subscribe(mTimeListener);
+			mTicks.setLevel(hub.getTickLevel());
+			updateFace();
+			if (mTimeZoneId == null) {
+				mFace.setTimeZone(hub.getTimeZone());
+			}
+		} else {
+			hub.unsubscribe(mTimeListener);
+		}
+	}
+
+	private void updateFace() {
+		mFace.setSweep(mTicks.sweeps());
+		mFace.setShowSeconds(mTicks.showsSeconds());
+	}
+
+	@Override
+	protected void onBoundsChange(Rect bounds) {
+		super.onBoundsChange(bounds);
+		//a move keeps the layer, only a new size composes it
+		if (mTicks.setSize(bounds.width(), bounds.height())) {
+			mFace.setSize(bounds.width(), bounds.height());
+		}
+	}
+
+	@Override
+	public void draw(Canvas canvas) {
+		Rect bounds = getBounds();
+		int count = canvas.save();
+		canvas.translate(bounds.left, bounds.top);
+		mFace.draw(canvas, System.currentTimeMillis());
+		canvas.restoreToCount(count);
+	}
+
+	@Override
+	public int getIntrinsicWidth() {
+		return mFace.getIntrinsicWidth();
+	}
+
+	@Override
+	public int getIntrinsicHeight() {
+		return mFace.getIntrinsicHeight();
+	}
+
+	@Override
+	public void setAlpha(int alpha) {
+		mFace.setAlpha(alpha);
+		invalidateSelf();
+	}
+
+	@Override
+	public void setColorFilter(ColorFilter cf) {
+		mFace.setColorFilter(cf);
+		invalidateSelf();
+	}
+
+	@Override
+	public int getOpacity() {
+		return PixelFormat.TRANSLUCENT;
+	}
+
+	private final TimeEventHub.TimeListener mTimeListener = new TimeEventHub.TimeListener() {
+		@Override
+		public void onTimeEvent(String action, TimeZone timeZone) {
+			if (action.equals(Intent.ACTION_TIMEZONE_CHANGED)) {
+				if (mTimeZoneId == null) {
+					mFace.setTimeZone(timeZone);
+				}
+			} else if (action.equals(Intent.ACTION_TIME_CHANGED)) {
+				mFace.onTimeChanged();
+			} else if (action.equals(TimeEventHub.ACTION_TICK_LEVEL_CHANGED)) {
+				mTicks.setLevel(TimeEventHub.getInstance(mContext).getTickLevel());
+				updateFace();
+			}
+			invalidateSelf();
+			scheduleNext();
+		}
+	};
+}
@@ -0,0 +1,279 @@
+package com.sherchen.realclock;
+
+import java.util.TimeZone;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+
+/**
+ * The drawing of a clock face without a view: the dial and brand composed
+ * once per size into a cached layer, and the hands for any time on top.
+ * Everything which shows a face outside of RealAnalogClock3, like
+ * {@link ClockDrawable} and {@link BatchRenderer}, draws through it, so the
+ * geometry is the same everywhere.
+ * <p>
+ * A face is not thread safe, but it may be used on any one thread. Its
+ * hands are own instances, several faces of the same config do not share
+ * state.
+ */
+public final class ClockFace {
+
+	private static final int ONESECOND = 1000;
+
+	private final Resources mResources;
+	private final FaceConfig mConfig;
+	private final Drawable mHourHand;
+	private final Drawable mMinuteHand;
+	private final Drawable mSecondHand;
+	private final Drawable[] mHands;
+	private final Paint mLayerPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+	private ZoneOffsetCache mZoneOffset;
+
+	private FaceCompositor.FaceLayer mLayer;
+	//decoded with the first layer, kept for the next size
+	private Drawable mDial;
+	private Drawable mBrand;
+	private int mWidth;
+	private int mHeight;
+	//the intrinsic size of the dial, read on first use
+	private int[] mDialSize;
+
+	private boolean mSweep;
+	private boolean mShowSeconds = true;
+	//reused by renderToBitmap
+	private Canvas mBitmapCanvas;
+
+	public ClockFace(Resources res, FaceConfig config) {
+		mResources = res;
+		mConfig = config;
+		mHourHand = config.hourHandId != 0 ? res.getDrawable(config.hourHandId).mutate() : null;
+		mMinuteHand = config.minuteHandId != 0 ? res.getDrawable(config.minuteHandId).mutate() : null;
+		mSecondHand = config.secondHandId != 0 ? res.getDrawable(config.secondHandId).mutate() : null;
+		mHands = new Drawable[] { mHourHand, mMinuteHand, mSecondHand };
+		mZoneOffset = new ZoneOffsetCache(config.timeZoneId == null
+				? TimeZone.getDefault() : TimeZone.getTimeZone(config.timeZoneId));
+	}
+
+	/**
+	 * @param timeZoneId an id of {@link TimeZone}, null for the device time zone
+	 */
+	public void setTimeZone(String timeZoneId) {
+		setTimeZone(timeZoneId == null ? TimeZone.getDefault() : TimeZone.getTimeZone(timeZoneId));
+	}
+
+	public void setTimeZone(TimeZone timeZone) {
+		if (mZoneOffset.getTimeZone() != timeZone) {
+			mZoneOffset.setTimeZone(timeZone);
+		}
+	}
+
+	public TimeZone getTimeZone() {
+		return mZoneOffset.getTimeZone();
+	}
+
+	/**
+	 * Forget the cached zone offset, after the wall clock was set.
+	 */
+	public void onTimeChanged() {
+		mZoneOffset.invalidate();
+	}
+
+	/**
+	 * @param sweep true to place the second hand between the marks by the milliseconds
+	 */
+	public void setSweep(boolean sweep) {
+		mSweep = sweep;
+	}
+
+	public boolean isSweep() {
+		return mSweep;
+	}
+
+	public void setShowSeconds(boolean show) {
+		mShowSeconds = show;
+	}
+
+	public boolean hasSecondHand() {
+		return mSecondHand != null;
+	}
+
+	public void setAlpha(int alpha) {
+		mLayerPaint.setAlpha(alpha);
+		for (Drawable hand : mHands) {
+			if (hand != null) {
+				hand.setAlpha(alpha);
+			}
+		}
+	}
+
+	public void setColorFilter(ColorFilter filter) {
+		mLayerPaint.setColorFilter(filter);
+		for (Drawable hand : mHands) {
+			if (hand != null) {
+				hand.setColorFilter(filter);
+			}
+		}
+	}
+
+	/**
+	 * @param filter false draws the layer and the hands without filtering, e.g. for a low-bit display
+	 */
+	public void setFilterBitmap(boolean filter) {
+		mLayerPaint.setFilterBitmap(filter);
+		for (Drawable hand : mHands) {
+			if (hand != null) {
+				hand.setFilterBitmap(filter);
+			}
+		}
+	}
+
+	/**
+	 * @return the width of the dial as decoded, 0 if there is none
+	 */
+	public int getIntrinsicWidth() {
+		return getDialSize()[0];
+	}
+
+	public int getIntrinsicHeight() {
+		return getDialSize()[1];
+	}
+
+	private int[] getDialSize() {
+		if (mDialSize == null) {
+			mDialSize = new int[2];
+			if (mDial != null) {
+				mDialSize[0] = mDial.getIntrinsicWidth();
+				mDialSize[1] = mDial.getIntrinsicHeight();
+			} else if (mConfig.dialId != 0) {
+				FaceCompositor.measureResource(mResources, mConfig.dialId, mDialSize);
+			}
+		}
+		return mDialSize;
+	}
+
+	/**
+	 * Compose the layer for the size on the calling thread. The dial and
+	 * brand are decoded once, another size only composes them again.
+	 */
+	public void setSize(int width, int height) {
+		if (width == mWidth && height == mHeight && mLayer != null) {
+			return;
+		}
+		mWidth = width;
+		mHeight = height;
+		mLayer = null;
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+		FaceCompositor.FaceRequest request = new FaceCompositor.FaceRequest();
+		request.resources = mResources;
+		request.dialId = mConfig.dialId;
+		request.brandId = mConfig.brandId;
+		request.brandMarginTop = mConfig.brandMarginTop;
+		request.hideBrand = mConfig.brandId == 0;
+		request.dial = mDial;
+		request.brand = mBrand;
+		request.width = width;
+		request.height = height;
+		//the old layer is left to the collector, a display list may still draw it
+		mLayer = FaceCompositor.composeNow(request);
+		if (mLayer != null) {
+			mDial = mLayer.dial;
+			mBrand = mLayer.brand;
+		}
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	/**
+	 * @return the scale of the hands, the one of the dial in the layer
+	 */
+	public float getScale() {
+		return mLayer != null ? mLayer.scale : 1.0f;
+	}
+
+	/**
+	 * Draw the dial layer and the hands at the given time, at the origin of the canvas.
+	 */
+	public void draw(Canvas canvas, long timeMillis) {
+		drawDial(canvas);
+		drawHands(canvas, timeMillis);
+	}
+
+	public void drawDial(Canvas canvas) {
+		if (mLayer != null) {
+			canvas.drawBitmap(mLayer.bitmap, 0, 0, mLayerPaint);
+		}
+	}
+
+	public void drawHands(Canvas canvas, long timeMillis) {
+		long localMillis = timeMillis + mZoneOffset.getOffset(timeMillis);
+		float seconds = localMillis / ONESECOND % 60;
+		if (mSweep) {
+			seconds += (localMillis % ONESECOND) / (float) ONESECOND;
+		}
+		float minutes = localMillis / 60000 % 60 + seconds / 60.0f;
+		float hour = localMillis / 3600000 % 12 + minutes / 60.0f;
+		float scale = getScale();
+		int centerX = mWidth / 2;
+		int centerY = mHeight / 2;
+		if (mHourHand != null) {
+			ClockHands.draw(canvas, centerX, centerY, scale, ClockHands.hourDegrees(hour), mHourHand);
+		}
+		if (mMinuteHand != null) {
+			ClockHands.draw(canvas, centerX, centerY, scale, ClockHands.minuteDegrees(minutes), mMinuteHand);
+		}
+		if (mSecondHand != null && mShowSeconds) {
+			ClockHands.draw(canvas, centerX, centerY, scale, ClockHands.secondDegrees(seconds), mSecondHand);
+		}
+	}
+
+	/**
+	 * Render the face at the time into a bitmap of the size, through the
+	 * layer of that size. A layer of another size is composed first.
+	 * @param reuse drawn into if it is mutable and of the size, may be null
+	 * @return reuse, or a new ARGB_8888 bitmap if it did not fit
+	 */
+	public Bitmap renderToBitmap(int width, int height, long timeMillis, Bitmap reuse) {
+		Bitmap bitmap = reuse;
+		if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()
+				|| bitmap.getWidth() != width || bitmap.getHeight() != height) {
+			bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+		} else {
+			bitmap.eraseColor(Color.TRANSPARENT);
+		}
+		setSize(width, height);
+		if (mBitmapCanvas == null) {
+			mBitmapCanvas = new Canvas();
+		}
+		mBitmapCanvas.setBitmap(bitmap);
+		draw(mBitmapCanvas, timeMillis);
+		return bitmap;
+	}
+
+	/**
+	 * Free the layer and the decoded dial once nothing draws them anymore,
+	 * the next {@link #setSize(int, int)} decodes and composes them again.
+	 */
+	public void release() {
+		if (mLayer != null && mLayer.bitmap != null) {
+			mLayer.bitmap.recycle();
+		}
+		mLayer = null;
+		mDial = null;
+		mBrand = null;
+		mWidth = 0;
+		mHeight = 0;
+	}
+}
@@ -0,0 +1,71 @@
+package com.sherchen.realclock;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * The hand geometry shared by the clock variants. A hand image has the pivot
+ * at its center, it is scaled like the dial and rotated around the center of
+ * the clock.
+ */
+final class ClockHands {
+
+	private ClockHands() {
+	}
+
+	/**
+	 * @param hour 0-12, with the minutes as fraction
+	 */
+	static float hourDegrees(float hour) {
+		return hour / 12.0f * 360.0f;
+	}
+
+	/**
+	 * @param minutes 0-60, with the seconds as fraction
+	 */
+	static float minuteDegrees(float minutes) {
+		return minutes / 60.0f * 360.0f;
+	}
+
+	/**
+	 * @param seconds 0-60, with the milliseconds as fraction in sweep mode
+	 */
+	static float secondDegrees(float seconds) {
+		return seconds / 60.0f * 360.0f;
+	}
+
+	static void draw(Canvas canvas, int centerX, int centerY, float scale,
+			float degrees, final Drawable drawable) {
+		canvas.save();
+		//rotate the hand at the center of x,y
+		canvas.rotate(degrees, centerX, centerY);
+		int w = (int) (drawable.getIntrinsicWidth() * scale);
+		int h = (int) (drawable.getIntrinsicHeight() * scale);
+		drawable.setBounds(
+				centerX - (w / 2), centerY - (h / 2), 
+				centerX + (w / 2), centerY + (h / 2));
+		drawable.draw(canvas);
+		canvas.restore();
+	}
+
+	/**
+	 * Draw a hand sprite of an atlas, dst is only used as scratch rect.
+	 */
+	static void draw(Canvas canvas, int centerX, int centerY, float scale,
+			float degrees, FaceAtlas atlas, int sprite, Rect dst, Paint paint) {
+		final Rect src = atlas.getSprite(sprite);
+		if (src == null) {
+			return;
+		}
+		canvas.save();
+		canvas.rotate(degrees, centerX, centerY);
+		int w = (int) (src.width() * scale);
+		int h = (int) (src.height() * scale);
+		dst.set(centerX - (w / 2), centerY - (h / 2), 
+				centerX + (w / 2), centerY + (h / 2));
+		canvas.drawBitmap(atlas.bitmap, src, dst, paint);
+		canvas.restore();
+	}
+}
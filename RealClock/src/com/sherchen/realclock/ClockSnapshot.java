@@ -0,0 +1,207 @@
+package com.sherchen.realclock;
+
+import java.util.TimeZone;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * The face of a {@link RealAnalogClock3} as it was when taken, to render it
+ * at any time and size without the view, e.g. for a notification or a
+ * timelapse. Taken on the main thread by {@link RealAnalogClock3#snapshot()},
+ * it shares nothing the clock changes afterwards: the layers given as
+ * drawables are own instances, the composed layer or atlas of the clock is
+ * only read and drawn as is at the size of the clock. Faces of resource ids,
+ * of drawables and of a {@link FacePack} are rendered alike, the pack must
+ * not be recycled while the snapshot is used. Only the dial, brand and hands
+ * are rendered, in the zone of the clock.
+ * <p>
+ * A snapshot is not thread safe, but it may be used on any one thread.
+ */
+public final class ClockSnapshot {
+
+	private static final int ONESECOND = 1000;
+	//the sprites of the hour, minute and second hand in an atlas
+	private static final int[] HAND_SPRITES = { FaceAtlas.SPRITE_HOUR, FaceAtlas.SPRITE_MINUTE,
+			FaceAtlas.SPRITE_SECOND };
+
+	private final Resources mResources;
+	//the dial and brand as ids or own drawables, composed for a size the clock has no layer of
+	private final FaceCompositor.FaceRequest mRequest;
+	//the layer or atlas of the clock at its size, drawn as is when that size is asked for
+	private final FaceCompositor.FaceLayer mClockLayer;
+	private final int mClockWidth;
+	private final int mClockHeight;
+	//the atlas of a FacePack, every layer is drawn from it at any size
+	private final FaceAtlas mPack;
+	private final int[] mHandIds;
+	private final Drawable[] mHands;
+	//the hands in the order of HAND_SPRITES
+	private final boolean[] mHidden;
+	private final ZoneOffsetCache mZoneOffset;
+	private final boolean mSweep;
+
+	//composed by the snapshot for the last size other than the one of the clock
+	private FaceCompositor.FaceLayer mLayer;
+	private final Paint mAtlasPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+	private final Rect mDst = new Rect();
+	private final float[] mDegrees = new float[3];
+	private Canvas mCanvas;
+
+	/**
+	 * @param request the dial, brand and hands, with drawables the clock does not draw
+	 * @param clockLayer the layer of the clock at clockWidth x clockHeight, may be null
+	 * @param pack the atlas of the FacePack of the clock, null if it has none
+	 * @param handIds the ids of hands the clock did not load yet, decoded on first render
+	 */
+	ClockSnapshot(Resources res, FaceCompositor.FaceRequest request, FaceCompositor.FaceLayer clockLayer,
+			int clockWidth, int clockHeight, FaceAtlas pack, int[] handIds, TimeZone timeZone, boolean sweep) {
+		mResources = res;
+		mRequest = request;
+		mClockLayer = clockLayer;
+		//a layer may be of the last size until the one of a new size is composed
+		boolean composed = clockLayer != null && clockLayer.bitmap != null;
+		mClockWidth = composed ? clockLayer.bitmap.getWidth() : clockWidth;
+		mClockHeight = composed ? clockLayer.bitmap.getHeight() : clockHeight;
+		mPack = pack;
+		mHandIds = handIds;
+		mHands = new Drawable[] { request.hourHand, request.minuteHand, request.secondHand };
+		mHidden = new boolean[] { request.hideHourHand, request.hideMinuteHand, request.hideSecondHand };
+		mZoneOffset = new ZoneOffsetCache(timeZone);
+		mSweep = sweep;
+	}
+
+	/**
+	 * @param reuse drawn into if it is mutable and of the size, may be null
+	 * @return reuse, or a new ARGB_8888 bitmap if it did not fit
+	 */
+	public Bitmap renderToBitmap(int width, int height, long timeMillis, Bitmap reuse) {
+		Bitmap bitmap = reuse;
+		if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()
+				|| bitmap.getWidth() != width || bitmap.getHeight() != height) {
+			bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+		} else {
+			bitmap.eraseColor(Color.TRANSPARENT);
+		}
+		if (mCanvas == null) {
+			mCanvas = new Canvas();
+		}
+		Canvas canvas = mCanvas;
+		canvas.setBitmap(bitmap);
+		FaceAtlas atlas = mPack;
+		float scale = 1.0f;
+		if (atlas == null) {
+			FaceCompositor.FaceLayer layer = getLayer(width, height);
+			if (layer != null) {
+				atlas = layer.atlas;
+				scale = layer.scale;
+				if (atlas == null) {
+					canvas.drawBitmap(layer.bitmap, 0, 0, null);
+				}
+			}
+		}
+		if (atlas != null) {
+			scale = drawAtlas(canvas, atlas, width, height);
+		}
+		drawHands(canvas, width / 2, height / 2, scale, timeMillis, atlas);
+		return bitmap;
+	}
+
+	/**
+	 * Free the layer the snapshot composed, the one of the clock is left to it.
+	 */
+	public void release() {
+		if (mLayer != null) {
+			mLayer.bitmap.recycle();
+			mLayer = null;
+		}
+	}
+
+	private FaceCompositor.FaceLayer getLayer(int width, int height) {
+		if (mClockLayer != null && width == mClockWidth && height == mClockHeight) {
+			return mClockLayer;
+		}
+		if (mLayer == null || mLayer.bitmap.getWidth() != width || mLayer.bitmap.getHeight() != height) {
+			release();
+			mRequest.width = width;
+			mRequest.height = height;
+			mLayer = FaceCompositor.composeNow(mRequest);
+			if (mLayer != null) {
+				//decoded once, the next size only composes them
+				mRequest.dial = mLayer.dial;
+				mRequest.brand = mLayer.brand;
+			}
+		}
+		return mLayer;
+	}
+
+	/**
+	 * The dial and brand of the atlas, placed as RealAnalogClock3 does.
+	 * @return the scale of the hands
+	 */
+	private float drawAtlas(Canvas canvas, FaceAtlas atlas, int width, int height) {
+		final Rect dst = mDst;
+		float scale = 1.0f;
+		Rect dial = atlas.getSprite(FaceAtlas.SPRITE_DIAL);
+		if (atlas.prescaled) {
+			//the atlas of the clock, its sprites have the size asked for already
+			if (dial != null && !mRequest.hideDial) {
+				dst.set(0, 0, dial.width(), dial.height());
+				canvas.drawBitmap(atlas.bitmap, dial, dst, mAtlasPaint);
+			}
+		} else if (dial != null) {
+			float xScale = (float) width / dial.width();
+			float yScale = (float) height / dial.height();
+			scale = Math.min(xScale, yScale);
+			if (!mRequest.hideDial) {
+				dst.set(0, 0, (int) (dial.width() * xScale), (int) (dial.height() * yScale));
+				canvas.drawBitmap(atlas.bitmap, dial, dst, mAtlasPaint);
+			}
+		}
+		Rect brand = atlas.getSprite(FaceAtlas.SPRITE_BRAND);
+		if (brand != null && !mRequest.hideBrand) {
+			int centerX = width / 2;
+			int w = (int) (brand.width() * scale);
+			int h = (int) (brand.height() * scale);
+			int top = mRequest.brandMarginTop;
+			dst.set(centerX - (w / 2), top, centerX + (w / 2), top + h);
+			canvas.drawBitmap(atlas.bitmap, brand, dst, mAtlasPaint);
+		}
+		return scale;
+	}
+
+	private void drawHands(Canvas canvas, int centerX, int centerY, float scale, long timeMillis, FaceAtlas atlas) {
+		long localMillis = timeMillis + mZoneOffset.getOffset(timeMillis);
+		float seconds = localMillis / ONESECOND % 60;
+		if (mSweep) {
+			seconds += (localMillis % ONESECOND) / (float) ONESECOND;
+		}
+		float minutes = localMillis / 60000 % 60 + seconds / 60.0f;
+		float hour = localMillis / 3600000 % 12 + minutes / 60.0f;
+		final float[] degrees = mDegrees;
+		degrees[0] = ClockHands.hourDegrees(hour);
+		degrees[1] = ClockHands.minuteDegrees(minutes);
+		degrees[2] = ClockHands.secondDegrees(seconds);
+		for (int i = 0; i < mHands.length; i++) {
+			if (mHidden[i]) {
+				continue;
+			}
+			if (atlas != null) {
+				ClockHands.draw(canvas, centerX, centerY, scale, degrees[i], atlas, HAND_SPRITES[i], mDst, mAtlasPaint);
+				continue;
+			}
+			if (mHands[i] == null && mHandIds[i] != 0) {
+				mHands[i] = mResources.getDrawable(mHandIds[i]);
+				mHandIds[i] = 0;
+			}
+			if (mHands[i] != null) {
+				ClockHands.draw(canvas, centerX, centerY, scale, degrees[i], mHands[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.sherchen.realclock;
+
+/**
+ * The decisions of a {@link ClockDrawable} which need no canvas: whether the
+ * face sweeps and shows its second hand at a level of the
+ * {@link PowerGovernor}, when the next tick is due and when the face has to
+ * be composed again. A tick only asks for the delay, composing is decided
+ * by the size alone. Plain Java, so it is tested on the JVM.
+ */
+final class ClockTicks {
+
+	static final int ONESECOND = 1000;
+	static final int ONEMINUTE = 60 * ONESECOND;
+	static final int SWEEP_FRAME_DELAY = 16;
+
+	private int mLevel = PowerGovernor.LEVEL_SWEEP;
+	//as set, the face only sweeps while the level allows a frame rate
+	private boolean mSweep;
+	private int mWidth;
+	private int mHeight;
+	private int mCompositions;
+
+	void setLevel(int level) {
+		mLevel = level;
+	}
+
+	int getLevel() {
+		return mLevel;
+	}
+
+	void setSweep(boolean sweep) {
+		mSweep = sweep;
+	}
+
+	/**
+	 * Below the sweep level a frame comes once a second, a second hand placed
+	 * by the milliseconds would stand between the marks on any other redraw.
+	 */
+	boolean sweeps() {
+		return mSweep && mLevel >= PowerGovernor.LEVEL_SWEEP;
+	}
+
+	boolean showsSeconds() {
+		return mLevel >= PowerGovernor.LEVEL_TICK;
+	}
+
+	/**
+	 * @return the milliseconds from now until the next tick, a frame in sweep
+	 * mode, else on the next full second or minute of the wall clock
+	 */
+	long getNextFrameDelay(long now) {
+		if (sweeps()) {
+			return SWEEP_FRAME_DELAY;
+		}
+		long period = showsSeconds() ? ONESECOND : ONEMINUTE;
+		return period - now % period;
+	}
+
+	/**
+	 * @return true if the face has to be sized again, only when the size changed
+	 */
+	boolean setSize(int width, int height) {
+		if (width == mWidth && height == mHeight) {
+			return false;
+		}
+		mWidth = width;
+		mHeight = height;
+		if (width > 0 && height > 0) {
+			mCompositions++;
+		}
+		return true;
+	}
+
+	/**
+	 * @return how often the face was composed, once per size it had
+	 */
+	int getCompositions() {
+		return mCompositions;
+	}
+}
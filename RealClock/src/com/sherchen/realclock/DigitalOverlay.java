@@ -0,0 +1,266 @@
+package com.sherchen.realclock;
+
+import java.util.Formatter;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.text.format.DateUtils;
+
+/**
+ * The digital time and the date drawn over the dial. The digits are
+ * rendered once per size and font into a strip of equally wide cells, a
+ * tick copies the cells of the characters which changed into the layer of
+ * the overlay and leaves the others alone. The date is only formatted and
+ * drawn again when the day changes, so a tick neither shapes text nor
+ * allocates.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+final class DigitalOverlay {
+
+	private static final String GLYPHS = "0123456789:";
+	private static final int GLYPH_COLON = 10;
+	//"HH:MM:SS"
+	private static final int MAX_CHARS = 8;
+	private static final float DATE_SCALE = 0.45f;
+	//of the smaller side of the clock when no text size is given
+	private static final float AUTO_TEXT_SCALE = 0.12f;
+	private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+	private final Context mContext;
+	private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.SUBPIXEL_TEXT_FLAG);
+	private final Paint mDatePaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.SUBPIXEL_TEXT_FLAG);
+	private final Paint mClearPaint = new Paint();
+	private final Rect mSrc = new Rect();
+	private final Rect mDst = new Rect();
+
+	private boolean mShowTime;
+	private boolean mShowDate;
+	private boolean mShowSeconds;
+	private boolean m24Hour = true;
+	private float mTextSize;
+	private int mMarginBottom;
+	private int mWidth;
+	private int mHeight;
+
+	//the glyph strip, one cell per character of GLYPHS
+	private Bitmap mStrip;
+	private int mCellWidth;
+	private int mCellHeight;
+
+	//what is on screen, drawn at mTop of the clock
+	private Bitmap mLayer;
+	private Canvas mLayerCanvas;
+	private int mTop;
+	private int mTimeLeft;
+	private final char[] mShown = new char[MAX_CHARS];
+	private final char[] mNext = new char[MAX_CHARS];
+	private int mShownLength;
+	private long mShownDay = Long.MIN_VALUE;
+
+	private final StringBuilder mDateBuilder = new StringBuilder(32);
+	private final Formatter mDateFormatter = new Formatter(mDateBuilder);
+
+	DigitalOverlay(Context context) {
+		mContext = context;
+		mClearPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+		mTextPaint.setTextAlign(Paint.Align.LEFT);
+		mDatePaint.setTextAlign(Paint.Align.CENTER);
+		setColor(0xff000000);
+	}
+
+	boolean isEnabled() {
+		return mShowTime || mShowDate;
+	}
+
+	void setContent(boolean time, boolean seconds, boolean date) {
+		mShowTime = time;
+		mShowSeconds = seconds;
+		mShowDate = date;
+		release();
+	}
+
+	/**
+	 * @param textSize of the digits in px, 0 to follow the size of the clock
+	 */
+	void setTextSize(float textSize) {
+		mTextSize = textSize;
+		release();
+	}
+
+	void setTypeface(Typeface typeface) {
+		mTextPaint.setTypeface(typeface);
+		mDatePaint.setTypeface(typeface);
+		release();
+	}
+
+	void setColor(int color) {
+		mTextPaint.setColor(color);
+		mDatePaint.setColor(color);
+		release();
+	}
+
+	void setMarginBottom(int marginBottom) {
+		mMarginBottom = marginBottom;
+		release();
+	}
+
+	void set24Hour(boolean is24Hour) {
+		if (m24Hour != is24Hour) {
+			m24Hour = is24Hour;
+			mShownLength = 0;
+		}
+	}
+
+	void setSize(int width, int height) {
+		if (mWidth != width || mHeight != height) {
+			mWidth = width;
+			mHeight = height;
+			release();
+		}
+	}
+
+	/**
+	 * Bring the layer to the given time, only the changed cells are drawn.
+	 * @param localMillis the time of the clock's zone as millis since the epoch
+	 * @return true if anything in the layer changed
+	 */
+	boolean update(long localMillis, long utcMillis, String timeZoneId) {
+		if (!isEnabled() || mWidth <= 0 || mHeight <= 0) {
+			return false;
+		}
+		if (mLayer == null) {
+			build();
+		}
+		boolean changed = false;
+		if (mShowTime) {
+			int length = format(localMillis);
+			//the width of the readout changed, e.g. 9:59 to 10:00, so start over
+			if (length != mShownLength) {
+				mLayerCanvas.drawRect(0, 0, mLayer.getWidth(), mCellHeight, mClearPaint);
+				mTimeLeft = (mLayer.getWidth() - length * mCellWidth) / 2;
+				mShownLength = 0;
+			}
+			for (int i = 0; i < length; i++) {
+				if (i < mShownLength && mShown[i] == mNext[i]) {
+					continue;
+				}
+				int glyph = mNext[i] == ':' ? GLYPH_COLON : mNext[i] - '0';
+				mSrc.set(glyph * mCellWidth, 0, (glyph + 1) * mCellWidth, mCellHeight);
+				mDst.set(mTimeLeft + i * mCellWidth, 0, mTimeLeft + (i + 1) * mCellWidth, mCellHeight);
+				mLayerCanvas.drawRect(mDst, mClearPaint);
+				mLayerCanvas.drawBitmap(mStrip, mSrc, mDst, null);
+				mShown[i] = mNext[i];
+				changed = true;
+			}
+			mShownLength = length;
+		}
+		long day = localMillis / DAY_MILLIS;
+		if (mShowDate && day != mShownDay) {
+			mShownDay = day;
+			drawDate(utcMillis, timeZoneId);
+			changed = true;
+		}
+		return changed;
+	}
+
+	void draw(Canvas canvas) {
+		if (mLayer != null) {
+			canvas.drawBitmap(mLayer, 0, mTop, null);
+		}
+	}
+
+	/**
+	 * Drop the strip and the layer, they are built again on the next update.
+	 * They are not recycled, the last display list of the view may still draw them.
+	 */
+	void release() {
+		mStrip = null;
+		mLayer = null;
+		mLayerCanvas = null;
+		mShownLength = 0;
+		mShownDay = Long.MIN_VALUE;
+	}
+
+	/**
+	 * @return the number of characters written to mNext
+	 */
+	private int format(long localMillis) {
+		long seconds = localMillis / 1000;
+		int hour = (int) (seconds / 3600 % 24);
+		int minute = (int) (seconds / 60 % 60);
+		int second = (int) (seconds % 60);
+		if (!m24Hour) {
+			hour %= 12;
+			if (hour == 0) {
+				hour = 12;
+			}
+		}
+		int i = 0;
+		if (hour >= 10 || m24Hour) {
+			mNext[i++] = (char) ('0' + hour / 10);
+		}
+		mNext[i++] = (char) ('0' + hour % 10);
+		mNext[i++] = ':';
+		mNext[i++] = (char) ('0' + minute / 10);
+		mNext[i++] = (char) ('0' + minute % 10);
+		if (mShowSeconds) {
+			mNext[i++] = ':';
+			mNext[i++] = (char) ('0' + second / 10);
+			mNext[i++] = (char) ('0' + second % 10);
+		}
+		return i;
+	}
+
+	private void drawDate(long utcMillis, String timeZoneId) {
+		int top = mShowTime ? mCellHeight : 0;
+		mLayerCanvas.drawRect(0, top, mLayer.getWidth(), mLayer.getHeight(), mClearPaint);
+		mDateBuilder.setLength(0);
+		DateUtils.formatDateRange(mContext, mDateFormatter, utcMillis, utcMillis,
+				DateUtils.FORMAT_SHOW_DATE | DateUtils.FORMAT_SHOW_WEEKDAY | DateUtils.FORMAT_ABBREV_ALL,
+				timeZoneId);
+		mLayerCanvas.drawText(mDateBuilder, 0, mDateBuilder.length(), mLayer.getWidth() / 2.0f,
+				top - mDatePaint.ascent(), mDatePaint);
+	}
+
+	/**
+	 * Render the glyph strip and size the layer for the current font.
+	 */
+	private void build() {
+		float textSize = mTextSize > 0 ? mTextSize : Math.min(mWidth, mHeight) * AUTO_TEXT_SCALE;
+		mTextPaint.setTextSize(textSize);
+		mDatePaint.setTextSize(textSize * DATE_SCALE);
+
+		//cells as wide as the widest digit, so the readout does not jitter
+		float[] widths = new float[GLYPHS.length()];
+		mTextPaint.getTextWidths(GLYPHS, widths);
+		float cellWidth = 0;
+		for (float w : widths) {
+			cellWidth = Math.max(cellWidth, w);
+		}
+		Paint.FontMetricsInt metrics = mTextPaint.getFontMetricsInt();
+		mCellWidth = Math.max(1, (int) Math.ceil(cellWidth));
+		mCellHeight = Math.max(1, metrics.descent - metrics.ascent);
+		mStrip = Bitmap.createBitmap(mCellWidth * GLYPHS.length(), mCellHeight, Bitmap.Config.ARGB_8888);
+		Canvas canvas = new Canvas(mStrip);
+		for (int i = 0; i < GLYPHS.length(); i++) {
+			float x = i * mCellWidth + (mCellWidth - widths[i]) / 2;
+			canvas.drawText(GLYPHS, i, i + 1, x, -metrics.ascent, mTextPaint);
+		}
+
+		Paint.FontMetricsInt dateMetrics = mDatePaint.getFontMetricsInt();
+		int height = (mShowTime ? mCellHeight : 0)
+				+ (mShowDate ? dateMetrics.descent - dateMetrics.ascent : 0);
+		mLayer = Bitmap.createBitmap(mWidth, Math.max(1, height), Bitmap.Config.ARGB_8888);
+		mLayerCanvas = new Canvas(mLayer);
+		mTop = mMarginBottom > 0 ? mHeight - mMarginBottom - height : mHeight * 2 / 3 - height / 2;
+		mShownLength = 0;
+		mShownDay = Long.MIN_VALUE;
+	}
+}
@@ -0,0 +1,121 @@
+package com.sherchen.realclock;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * All sprites of one face packed into a single bitmap, so drawing the clock
+ * needs one texture instead of one per hand. The sprites are addressed by
+ * their type, a missing sprite is simply not drawn.
+ */
+final class FaceAtlas {
+
+	static final int SPRITE_DIAL = 0;
+	static final int SPRITE_BRAND = 1;
+	static final int SPRITE_HOUR = 2;
+	static final int SPRITE_MINUTE = 3;
+	static final int SPRITE_SECOND = 4;
+	static final int SPRITE_COUNT = 5;
+
+	//keeps filtering from bleeding one sprite into the next
+	private static final int PADDING = 2;
+
+	final Bitmap bitmap;
+	//true if the sprites already have the size they are drawn with
+	final boolean prescaled;
+	private final Rect[] mSprites = new Rect[SPRITE_COUNT];
+
+	FaceAtlas(Bitmap bitmap) {
+		this(bitmap, false);
+	}
+
+	private FaceAtlas(Bitmap bitmap, boolean prescaled) {
+		this.bitmap = bitmap;
+		this.prescaled = prescaled;
+	}
+
+	/**
+	 * Pack the drawables into one atlas at the size they will be drawn with,
+	 * tallest first on shelves. Null drawables are left out.
+	 * @param drawables indexed by the sprite type
+	 * @param widths the final width of each sprite
+	 * @param heights the final height of each sprite
+	 */
+	static FaceAtlas build(Drawable[] drawables, int[] widths, int[] heights) {
+		Integer[] order = new Integer[SPRITE_COUNT];
+		long area = 0;
+		int maxWidth = 0;
+		for (int i = 0; i < SPRITE_COUNT; i++) {
+			order[i] = i;
+			if (drawables[i] != null) {
+				area += (long) (widths[i] + PADDING) * (heights[i] + PADDING);
+				maxWidth = Math.max(maxWidth, widths[i] + PADDING);
+			}
+		}
+		//a handful of sprites, a plain insertion sort on the height will do
+		for (int i = 1; i < SPRITE_COUNT; i++) {
+			for (int j = i; j > 0 && height(drawables, heights, order[j]) > height(drawables, heights, order[j - 1]); j--) {
+				Integer t = order[j];
+				order[j] = order[j - 1];
+				order[j - 1] = t;
+			}
+		}
+		int width = Math.max(maxWidth, (int) Math.ceil(Math.sqrt(area)));
+
+		int[] left = new int[SPRITE_COUNT];
+		int[] top = new int[SPRITE_COUNT];
+		int x = 0;
+		int y = 0;
+		int shelfHeight = 0;
+		for (int type : order) {
+			if (drawables[type] == null) {
+				continue;
+			}
+			int w = widths[type] + PADDING;
+			if (x + w > width) {
+				x = 0;
+				y += shelfHeight;
+				shelfHeight = 0;
+			}
+			left[type] = x;
+			top[type] = y;
+			x += w;
+			shelfHeight = Math.max(shelfHeight, heights[type] + PADDING);
+		}
+
+		FaceAtlas atlas = new FaceAtlas(Bitmap.createBitmap(Math.max(1, width),
+				Math.max(1, y + shelfHeight), Bitmap.Config.ARGB_8888), true);
+		Canvas canvas = new Canvas(atlas.bitmap);
+		for (int type = 0; type < SPRITE_COUNT; type++) {
+			Drawable drawable = drawables[type];
+			if (drawable == null) {
+				continue;
+			}
+			atlas.setSprite(type, left[type], top[type], left[type] + widths[type], top[type] + heights[type]);
+			drawable.setBounds(atlas.getSprite(type));
+			drawable.draw(canvas);
+		}
+		return atlas;
+	}
+
+	private static int height(Drawable[] drawables, int[] heights, int type) {
+		return drawables[type] == null ? -1 : heights[type];
+	}
+
+	void setSprite(int type, int left, int top, int right, int bottom) {
+		mSprites[type] = new Rect(left, top, right, bottom);
+	}
+
+	/**
+	 * @return the area of the sprite in the atlas, or null if the face has none
+	 */
+	Rect getSprite(int type) {
+		return mSprites[type];
+	}
+
+	boolean hasSprite(int type) {
+		return mSprites[type] != null;
+	}
+}
@@ -0,0 +1,254 @@
+package com.sherchen.realclock;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Message;
+import android.os.Process;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+
+/**
+ * Decodes the dial and brand of a clock and composes them into one bitmap of
+ * the clock size on a background thread. The result is handed back to the
+ * clock through its handler, so the UI thread only has to blit the layer.
+ */
+final class FaceCompositor {
+
+	private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable r) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+					r.run();
+				}
+			}, "RealClock-face");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * The composed dial and brand of one clock size.
+	 */
+	static final class FaceLayer {
+		final Bitmap bitmap;
+		//the scale the hands must use to match the dial
+		final float scale;
+		final Drawable dial;
+		final Drawable brand;
+		//in atlas mode all sprites packed at their final size, the bitmap is null then
+		final FaceAtlas atlas;
+
+		FaceLayer(Bitmap bitmap, float scale, Drawable dial, Drawable brand, FaceAtlas atlas) {
+			this.bitmap = bitmap;
+			this.scale = scale;
+			this.dial = dial;
+			this.brand = brand;
+			this.atlas = atlas;
+		}
+	}
+
+	/**
+	 * What to compose. A drawable wins over its resource id, so a layer which
+	 * was decoded once is not decoded again for the next size.
+	 */
+	static final class FaceRequest {
+		Resources resources;
+		Drawable dial;
+		int dialId;
+		Drawable brand;
+		int brandId;
+		int brandMarginTop;
+		boolean hideDial;
+		boolean hideBrand;
+		int width;
+		int height;
+		//pack the hands with the dial and brand instead of composing a dial layer
+		boolean atlas;
+		Drawable hourHand;
+		Drawable minuteHand;
+		Drawable secondHand;
+		boolean hideHourHand;
+		boolean hideMinuteHand;
+		boolean hideSecondHand;
+	}
+
+	private FaceCompositor() {
+	}
+
+	/**
+	 * Read the size a bitmap resource will have once loaded as a drawable,
+	 * only the header of the image is decoded.
+	 * @return false if the resource is not a plain bitmap
+	 */
+	static boolean measureResource(Resources res, int id, int[] outSize) {
+		TypedValue value = new TypedValue();
+		BitmapFactory.Options opts = new BitmapFactory.Options();
+		opts.inJustDecodeBounds = true;
+		InputStream is = res.openRawResource(id, value);
+		try {
+			BitmapFactory.decodeStream(is, null, opts);
+		} finally {
+			try {
+				is.close();
+			} catch (IOException e) {
+				//nothing to do, we only read the header
+			}
+		}
+		if (opts.outWidth <= 0 || opts.outHeight <= 0) {
+			return false;
+		}
+
+		//apply the same density scaling as Resources.getDrawable
+		int density = value.density;
+		if (density == TypedValue.DENSITY_DEFAULT) {
+			density = DisplayMetrics.DENSITY_DEFAULT;
+		}
+		int targetDensity = res.getDisplayMetrics().densityDpi;
+		if (density == TypedValue.DENSITY_NONE || density == targetDensity) {
+			outSize[0] = opts.outWidth;
+			outSize[1] = opts.outHeight;
+		} else {
+			float scale = (float) targetDensity / density;
+			outSize[0] = (int) (opts.outWidth * scale + 0.5f);
+			outSize[1] = (int) (opts.outHeight * scale + 0.5f);
+		}
+		return true;
+	}
+
+	/**
+	 * Compose the face in the background. When done, a message with the given
+	 * what, the generation as arg1 and the {@link FaceLayer} as obj is sent to
+	 * the handler. Cancelling the returned future drops the result, its value
+	 * is the layer too, for callers which cannot wait for the message.
+	 */
+	static Future<FaceLayer> compose(final FaceRequest request, final Handler handler,
+			final int what, final int generation) {
+		return sExecutor.submit(new Callable<FaceLayer>() {
+			@Override
+			public FaceLayer call() {
+				FaceLayer layer = composeNow(request);
+				if (layer == null || Thread.currentThread().isInterrupted()) {
+					return null;
+				}
+				Message msg = handler.obtainMessage(what, layer);
+				msg.arg1 = generation;
+				handler.sendMessage(msg);
+				return layer;
+			}
+		});
+	}
+
+	/**
+	 * @return the layer, or null if the size is empty or the work was cancelled
+	 */
+	static FaceLayer composeNow(FaceRequest request) {
+		Drawable dial = request.dial;
+		int[] size = new int[2];
+		if (dial == null && request.dialId != 0) {
+			//a hidden dial only gives the scale, it is not decoded if its size can be read
+			if (!request.hideDial || !measureResource(request.resources, request.dialId, size)) {
+				dial = request.resources.getDrawable(request.dialId);
+			}
+		}
+		if (dial != null) {
+			size[0] = dial.getIntrinsicWidth();
+			size[1] = dial.getIntrinsicHeight();
+		}
+		Drawable brand = request.brand;
+		if (brand == null && request.brandId != 0 && !request.hideBrand) {
+			brand = request.resources.getDrawable(request.brandId);
+		}
+		final int width = request.width;
+		final int height = request.height;
+		if (width <= 0 || height <= 0 || Thread.currentThread().isInterrupted()) {
+			return null;
+		}
+		if (size[0] <= 0 || size[1] <= 0) {
+			//no dial, the brand and hands keep their size like over the placeholder
+			size[0] = width;
+			size[1] = height;
+		}
+		int w = size[0];
+		int h = size[1];
+		float xScale = (float) width / w;
+		float yScale = (float) height / h;
+		float scale = Math.min(xScale, yScale);
+
+		if (request.atlas) {
+			return new FaceLayer(null, scale, dial, brand, buildAtlas(request, dial, brand, xScale, yScale, scale));
+		}
+
+		Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+		Canvas canvas = new Canvas(bitmap);
+		if (!request.hideDial && dial != null) {//resize the dial to fit the clock sizes
+			dial.setBounds(0, 0, (int) (w * xScale), (int) (h * yScale));
+			dial.draw(canvas);
+		}
+		if (!request.hideBrand && brand != null) {
+			int centerX = width / 2;
+			int bw = (int) (brand.getIntrinsicWidth() * scale);
+			int bh = (int) (brand.getIntrinsicHeight() * scale);
+			int top = request.brandMarginTop;
+			brand.setBounds(centerX - (bw / 2), top, centerX + (bw / 2), top + bh);
+			brand.draw(canvas);
+		}
+		return new FaceLayer(bitmap, scale, dial, brand, null);
+	}
+
+	private static FaceAtlas buildAtlas(FaceRequest request, Drawable dial, Drawable brand,
+			float xScale, float yScale, float scale) {
+		final Resources res = request.resources;
+		Drawable[] drawables = new Drawable[FaceAtlas.SPRITE_COUNT];
+		int[] widths = new int[FaceAtlas.SPRITE_COUNT];
+		int[] heights = new int[FaceAtlas.SPRITE_COUNT];
+		if (!request.hideDial && dial != null) {
+			drawables[FaceAtlas.SPRITE_DIAL] = dial;
+			widths[FaceAtlas.SPRITE_DIAL] = (int) (dial.getIntrinsicWidth() * xScale);
+			heights[FaceAtlas.SPRITE_DIAL] = (int) (dial.getIntrinsicHeight() * yScale);
+		}
+		if (!request.hideBrand && brand != null) {
+			drawables[FaceAtlas.SPRITE_BRAND] = brand;
+		}
+		//the UI thread may draw the hands over the placeholder meanwhile, use own instances
+		if (!request.hideHourHand) {
+			drawables[FaceAtlas.SPRITE_HOUR] = copyOf(res, request.hourHand);
+		}
+		if (!request.hideMinuteHand) {
+			drawables[FaceAtlas.SPRITE_MINUTE] = copyOf(res, request.minuteHand);
+		}
+		if (!request.hideSecondHand) {
+			drawables[FaceAtlas.SPRITE_SECOND] = copyOf(res, request.secondHand);
+		}
+		for (int type = FaceAtlas.SPRITE_BRAND; type < FaceAtlas.SPRITE_COUNT; type++) {
+			Drawable drawable = drawables[type];
+			if (drawable != null) {
+				widths[type] = (int) (drawable.getIntrinsicWidth() * scale);
+				heights[type] = (int) (drawable.getIntrinsicHeight() * scale);
+			}
+		}
+		return FaceAtlas.build(drawables, widths, heights);
+	}
+
+	static Drawable copyOf(Resources res, Drawable drawable) {
+		if (drawable == null) {
+			return null;
+		}
+		Drawable.ConstantState state = drawable.getConstantState();
+		return state != null ? state.newDrawable(res) : drawable;
+	}
+}
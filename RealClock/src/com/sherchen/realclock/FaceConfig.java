@@ -0,0 +1,137 @@
+package com.sherchen.realclock;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.util.AttributeSet;
+
+/**
+ * The face of a clock as given by the RealAnalogClock styleable: the
+ * drawables, the layout values and the time zone. Lets code without a view,
+ * like {@link BatchRenderer}, use the same face as an inflated clock. A
+ * resource id of 0 leaves that layer out.
+ */
+public final class FaceConfig {
+
+	private static final int DEFAULT_BRAND_MARGIN_TOP = 5;
+	private static final int DEFAULT_HOUR_CENTER_OFFSET = 8;
+	private static final int DEFAULT_MINUTE_CENTER_OFFSET = 10;
+	private static final int DEFAULT_SECOND_CENTER_OFFSET = 0;
+
+	int dialId;
+	int brandId;
+	int hourHandId;
+	int minuteHandId;
+	int secondHandId;
+	//in px
+	int brandMarginTop = DEFAULT_BRAND_MARGIN_TOP;
+	int hourCenterOffset = DEFAULT_HOUR_CENTER_OFFSET;
+	int minuteCenterOffset = DEFAULT_MINUTE_CENTER_OFFSET;
+	int secondCenterOffset = DEFAULT_SECOND_CENTER_OFFSET;
+	//null for the device time zone
+	String timeZoneId;
+
+	public FaceConfig() {
+	}
+
+	/**
+	 * Read the face from the attributes of a layout, e.g. those handed to a
+	 * custom view.
+	 */
+	public static FaceConfig fromAttributes(Context context, AttributeSet attrs, int defStyle) {
+		TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.RealAnalogClock, defStyle, 0);
+		try {
+			return read(a);
+		} finally {
+			a.recycle();
+		}
+	}
+
+	/**
+	 * Read the face from a style resource holding the clock_* attributes.
+	 */
+	public static FaceConfig fromStyle(Context context, int styleId) {
+		TypedArray a = context.obtainStyledAttributes(styleId, R.styleable.RealAnalogClock);
+		try {
+			return read(a);
+		} finally {
+			a.recycle();
+		}
+	}
+
+	static FaceConfig read(TypedArray a) {
+		FaceConfig config = new FaceConfig();
+		config.dialId = a.getResourceId(R.styleable.RealAnalogClock_clock_dial, 0);
+		config.brandId = a.getResourceId(R.styleable.RealAnalogClock_clock_brand, 0);
+		config.hourHandId = a.getResourceId(R.styleable.RealAnalogClock_clock_pointer_hour, 0);
+		config.minuteHandId = a.getResourceId(R.styleable.RealAnalogClock_clock_pointer_minute, 0);
+		config.secondHandId = a.getResourceId(R.styleable.RealAnalogClock_clock_pointer_second, 0);
+		config.brandMarginTop = a.getDimensionPixelSize(R.styleable.RealAnalogClock_clock_brand_margin_top, DEFAULT_BRAND_MARGIN_TOP);
+		config.hourCenterOffset = a.getDimensionPixelSize(R.styleable.RealAnalogClock_clock_hour_center_offset, DEFAULT_HOUR_CENTER_OFFSET);
+		config.minuteCenterOffset = a.getDimensionPixelSize(R.styleable.RealAnalogClock_clock_minute_center_offset, DEFAULT_MINUTE_CENTER_OFFSET);
+		config.secondCenterOffset = a.getDimensionPixelSize(R.styleable.RealAnalogClock_clock_second_center_offset, DEFAULT_SECOND_CENTER_OFFSET);
+		config.timeZoneId = a.getString(R.styleable.RealAnalogClock_clock_timezone);
+		return config;
+	}
+
+	public void setDial(int id) {
+		dialId = id;
+	}
+
+	public void setBrand(int id) {
+		brandId = id;
+	}
+
+	public void setHourHand(int id) {
+		hourHandId = id;
+	}
+
+	public void setMinuteHand(int id) {
+		minuteHandId = id;
+	}
+
+	public void setSecondHand(int id) {
+		secondHandId = id;
+	}
+
+	/**
+	 * @param px the margin of the brand from the top of the clock
+	 */
+	public void setBrandMarginTop(int px) {
+		brandMarginTop = px;
+	}
+
+	/**
+	 * @param timeZoneId an id of {@link java.util.TimeZone}, null for the device time zone
+	 */
+	public void setTimeZone(String timeZoneId) {
+		this.timeZoneId = timeZoneId;
+	}
+
+	public int getDial() {
+		return dialId;
+	}
+
+	public int getBrand() {
+		return brandId;
+	}
+
+	public int getHourHand() {
+		return hourHandId;
+	}
+
+	public int getMinuteHand() {
+		return minuteHandId;
+	}
+
+	public int getSecondHand() {
+		return secondHandId;
+	}
+
+	public int getBrandMarginTop() {
+		return brandMarginTop;
+	}
+
+	public String getTimeZone() {
+		return timeZoneId;
+	}
+}
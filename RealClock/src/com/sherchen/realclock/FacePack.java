@@ -0,0 +1,233 @@
+package com.sherchen.realclock;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+/**
+ * A clock face in one file: a small descriptor with the layout values the
+ * styleable attributes would give, followed by an atlas image holding the
+ * dial, brand and hands. Apply it with {@link RealAnalogClock3#setFace(FacePack)}.
+ * <p>
+ * The file is memory mapped and the atlas decoded straight from the mapping,
+ * so loading can run on any thread. The layout, big endian:
+ * <pre>
+ * int   magic 'RCFP'
+ * short version
+ * short brand margin top in dp
+ * short hour, minute and second center offset in dp
+ * byte  sprite count
+ *       per sprite: byte type, short left, top, width, height in the atlas
+ * int   atlas length
+ * bytes atlas as png or webp
+ * </pre>
+ */
+public final class FacePack {
+
+	static final int MAGIC = 0x52434650;//RCFP
+	static final int VERSION = 1;
+	//magic, version, margin, three offsets and the sprite count
+	private static final int HEADER_SIZE = 4 + 2 + 2 + 3 * 2 + 1;
+	//type and four shorts
+	private static final int SPRITE_SIZE = 1 + 4 * 2;
+
+	private final FaceAtlas mAtlas;
+	private final int mBrandMarginTop;
+	private final int mHourCenterOffset;
+	private final int mMinuteCenterOffset;
+	private final int mSecondCenterOffset;
+
+	private FacePack(FaceAtlas atlas, int brandMarginTop, int hourCenterOffset,
+			int minuteCenterOffset, int secondCenterOffset) {
+		mAtlas = atlas;
+		mBrandMarginTop = brandMarginTop;
+		mHourCenterOffset = hourCenterOffset;
+		mMinuteCenterOffset = minuteCenterOffset;
+		mSecondCenterOffset = secondCenterOffset;
+	}
+
+	public static FacePack fromFile(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Assets stored uncompressed are mapped in place, compressed ones have
+	 * to be read into memory first.
+	 */
+	public static FacePack fromAsset(AssetManager assets, String name) throws IOException {
+		AssetFileDescriptor afd;
+		try {
+			afd = assets.openFd(name);
+		} catch (FileNotFoundException e) {
+			return parse(readFully(assets.open(name)));
+		}
+		try {
+			FileInputStream in = afd.createInputStream();
+			try {
+				return parse(in.getChannel().map(FileChannel.MapMode.READ_ONLY,
+						afd.getStartOffset(), afd.getLength()));
+			} finally {
+				in.close();
+			}
+		} finally {
+			afd.close();
+		}
+	}
+
+	static FacePack parse(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+			throw new IOException("not a face pack");
+		}
+		int version = buffer.getShort();
+		if (version != VERSION) {
+			throw new IOException("unsupported face pack version " + version);
+		}
+		int brandMarginTop = buffer.getShort();
+		int hourCenterOffset = buffer.getShort();
+		int minuteCenterOffset = buffer.getShort();
+		int secondCenterOffset = buffer.getShort();
+
+		int count = buffer.get() & 0xff;
+		//the sprite table and the atlas length
+		if (buffer.remaining() < count * SPRITE_SIZE + 4) {
+			throw new IOException("truncated face pack");
+		}
+		int[] sprites = new int[count * 5];
+		for (int i = 0; i < count; i++) {
+			sprites[i * 5] = buffer.get();
+			for (int j = 1; j < 5; j++) {
+				sprites[i * 5 + j] = buffer.getShort();
+			}
+		}
+
+		int length = buffer.getInt();
+		if (length <= 0 || length > buffer.remaining()) {
+			throw new IOException("truncated face pack");
+		}
+		ByteBuffer image = buffer.slice();
+		image.limit(length);
+		BitmapFactory.Options opts = new BitmapFactory.Options();
+		//the sprites are scaled by the clock, not by the density of the device
+		opts.inScaled = false;
+		opts.inPreferredConfig = Bitmap.Config.ARGB_8888;
+		Bitmap bitmap = BitmapFactory.decodeStream(new ByteBufferInputStream(image), null, opts);
+		if (bitmap == null) {
+			throw new IOException("cannot decode the face pack atlas");
+		}
+
+		FaceAtlas atlas = new FaceAtlas(bitmap);
+		for (int i = 0; i < count; i++) {
+			int type = sprites[i * 5];
+			if (type < 0 || type >= FaceAtlas.SPRITE_COUNT) {
+				continue;
+			}
+			int left = sprites[i * 5 + 1];
+			int top = sprites[i * 5 + 2];
+			int right = left + sprites[i * 5 + 3];
+			int bottom = top + sprites[i * 5 + 4];
+			if (left < 0 || top < 0 || right < left || bottom < top
+					|| right > bitmap.getWidth() || bottom > bitmap.getHeight()) {
+				bitmap.recycle();
+				throw new IOException("face pack sprite " + type + " outside of the atlas");
+			}
+			atlas.setSprite(type, left, top, right, bottom);
+		}
+		return new FacePack(atlas, brandMarginTop, hourCenterOffset,
+				minuteCenterOffset, secondCenterOffset);
+	}
+
+	private static ByteBuffer readFully(InputStream in) throws IOException {
+		try {
+			byte[] buffer = new byte[Math.max(in.available(), 8192)];
+			int size = 0;
+			int read;
+			while ((read = in.read(buffer, size, buffer.length - size)) > 0) {
+				size += read;
+				if (size == buffer.length) {
+					byte[] grown = new byte[buffer.length * 2];
+					System.arraycopy(buffer, 0, grown, 0, size);
+					buffer = grown;
+				}
+			}
+			return ByteBuffer.wrap(buffer, 0, size);
+		} finally {
+			in.close();
+		}
+	}
+
+	FaceAtlas getAtlas() {
+		return mAtlas;
+	}
+
+	/**
+	 * @return the margin in dp
+	 */
+	public int getBrandMarginTop() {
+		return mBrandMarginTop;
+	}
+
+	public int getHourCenterOffset() {
+		return mHourCenterOffset;
+	}
+
+	public int getMinuteCenterOffset() {
+		return mMinuteCenterOffset;
+	}
+
+	public int getSecondCenterOffset() {
+		return mSecondCenterOffset;
+	}
+
+	/**
+	 * Free the atlas, the pack must not be used by any clock anymore.
+	 */
+	public void recycle() {
+		mAtlas.bitmap.recycle();
+	}
+
+	/**
+	 * Feeds the decoder from the mapping without copying it to the heap.
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer mBuffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			mBuffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return mBuffer.hasRemaining() ? mBuffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (!mBuffer.hasRemaining()) {
+				return -1;
+			}
+			len = Math.min(len, mBuffer.remaining());
+			mBuffer.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public int available() {
+			return mBuffer.remaining();
+		}
+	}
+}
@@ -0,0 +1,301 @@
+package com.sherchen.realclock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.TimeZone;
+
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.util.SparseArray;
+
+/**
+ * What the clocks of a list share, so binding a recycled clock to another
+ * item costs no decoding and no allocation once every face was seen: the
+ * composed face layers keyed by face and size, the decoded drawables and
+ * the zone offset caches and the second hand sprites. A layer is counted while a clock shows it, layers
+ * no clock shows are kept up to a memory budget and dropped oldest first.
+ * <p>
+ * The pool lives as long as the process, so it also carries the faces over
+ * a configuration change: the clocks of the re-created activity find their
+ * layer, or at least the decoded drawables, and draw the face at once.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+final class FacePool {
+
+	//of the heap the app may use, for the layers no clock shows right now
+	private static final int BUDGET_DIVISOR = 16;
+
+	private static FacePool sInstance;
+
+	/**
+	 * Identifies a composed layer. A clock keeps one and fills it in before
+	 * every lookup, the pool copies it when a layer is added.
+	 */
+	static final class Key {
+		int dialId;
+		int brandId;
+		int brandMarginTop;
+		boolean hideDial;
+		boolean hideBrand;
+		int width;
+		int height;
+		int density;
+
+		void set(Key other) {
+			dialId = other.dialId;
+			brandId = other.brandId;
+			brandMarginTop = other.brandMarginTop;
+			hideDial = other.hideDial;
+			hideBrand = other.hideBrand;
+			width = other.width;
+			height = other.height;
+			density = other.density;
+		}
+
+		/**
+		 * @return true if only the size differs
+		 */
+		boolean sameFace(Key k) {
+			return dialId == k.dialId && brandId == k.brandId && brandMarginTop == k.brandMarginTop
+					&& hideDial == k.hideDial && hideBrand == k.hideBrand && density == k.density;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return dialId == k.dialId && brandId == k.brandId && brandMarginTop == k.brandMarginTop
+					&& hideDial == k.hideDial && hideBrand == k.hideBrand
+					&& width == k.width && height == k.height && density == k.density;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = dialId;
+			h = 31 * h + brandId;
+			h = 31 * h + brandMarginTop;
+			h = 31 * h + (hideDial ? 1 : 0);
+			h = 31 * h + (hideBrand ? 1 : 0);
+			h = 31 * h + width;
+			h = 31 * h + height;
+			h = 31 * h + density;
+			return h;
+		}
+	}
+
+	private static final class Entry {
+		final Key key = new Key();
+		FaceCompositor.FaceLayer layer;
+		int refs;
+	}
+
+	//in access order, the eldest unused layer is dropped first
+	private final LinkedHashMap<Key, Entry> mEntries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+	private final IdentityHashMap<FaceCompositor.FaceLayer, Entry> mByLayer = new IdentityHashMap<FaceCompositor.FaceLayer, Entry>();
+	private final SparseArray<Drawable> mDrawables = new SparseArray<Drawable>();
+	//the density the drawables were decoded for
+	private int mDensity;
+	private final HashMap<String, ZoneOffsetCache> mZones = new HashMap<String, ZoneOffsetCache>();
+	//a handful at most, one per second hand and scale shown
+	private final ArrayList<HandSprites> mSprites = new ArrayList<HandSprites>();
+	private final long mBudget;
+	private long mUnusedBytes;
+
+	private FacePool() {
+		mBudget = Runtime.getRuntime().maxMemory() / BUDGET_DIVISOR;
+	}
+
+	static FacePool getInstance() {
+		if (sInstance == null) {
+			sInstance = new FacePool();
+		}
+		return sInstance;
+	}
+
+	/**
+	 * @return the layer for the key, counted for the caller, or null if none was composed yet
+	 */
+	FaceCompositor.FaceLayer acquire(Key key) {
+		Entry entry = mEntries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.refs++ == 0) {
+			mUnusedBytes -= bytesOf(entry.layer);
+		}
+		return entry.layer;
+	}
+
+	/**
+	 * Add a layer composed for the key, counted for the caller. If another
+	 * clock added one for the same key meanwhile, that one is returned and
+	 * should be used instead.
+	 */
+	FaceCompositor.FaceLayer put(Key key, FaceCompositor.FaceLayer layer) {
+		FaceCompositor.FaceLayer existing = acquire(key);
+		if (existing != null) {
+			return existing;
+		}
+		Entry entry = new Entry();
+		entry.key.set(key);
+		entry.layer = layer;
+		entry.refs = 1;
+		mEntries.put(entry.key, entry);
+		mByLayer.put(layer, entry);
+		return layer;
+	}
+
+	/**
+	 * @return a layer of the same face at another size, not counted, to be
+	 * stretched while the one of the right size is composed. Null if none.
+	 */
+	FaceCompositor.FaceLayer findOtherSize(Key key) {
+		for (Entry entry : mEntries.values()) {
+			if (entry.key.sameFace(key) && entry.layer.bitmap != null) {
+				return entry.layer;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The caller no longer shows the layer, it is kept for the next bind
+	 * while the budget allows.
+	 */
+	void release(FaceCompositor.FaceLayer layer) {
+		Entry entry = mByLayer.get(layer);
+		if (entry == null || entry.refs == 0) {
+			return;
+		}
+		if (--entry.refs == 0) {
+			mUnusedBytes += bytesOf(layer);
+			trim();
+		}
+	}
+
+	/**
+	 * Drop the layers no clock shows and all decoded drawables, so the next
+	 * clock starts cold. For benchmarks, the clocks alive keep their drawables.
+	 */
+	void evictUnused() {
+		Iterator<Entry> it = mEntries.values().iterator();
+		while (it.hasNext()) {
+			Entry entry = it.next();
+			if (entry.refs == 0) {
+				it.remove();
+				mByLayer.remove(entry.layer);
+			}
+		}
+		mUnusedBytes = 0;
+		mDrawables.clear();
+	}
+
+	/**
+	 * @return one instance per resource for all clocks, the clocks set the bounds before every draw
+	 */
+	Drawable getDrawable(Resources res, int id) {
+		if (id == 0) {
+			return null;
+		}
+		Drawable drawable = peekDrawable(res, id);
+		if (drawable == null) {
+			drawable = res.getDrawable(id);
+			mDrawables.put(id, drawable);
+		}
+		return drawable;
+	}
+
+	/**
+	 * @return the drawable if it was decoded already, else null
+	 */
+	Drawable peekDrawable(Resources res, int id) {
+		int density = res.getDisplayMetrics().densityDpi;
+		if (density != mDensity) {
+			//decoded for another density, e.g. after a display change
+			mDrawables.clear();
+			mDensity = density;
+		}
+		return id == 0 ? null : mDrawables.get(id);
+	}
+
+	/**
+	 * Keep a drawable decoded in the background, e.g. a dial, for the next
+	 * clock which composes it.
+	 */
+	void keepDrawable(Resources res, int id, Drawable drawable) {
+		if (id != 0 && drawable != null && peekDrawable(res, id) == null) {
+			mDrawables.put(id, drawable);
+		}
+	}
+
+	/**
+	 * @param timeZone the device time zone, used when id is null
+	 * @return the offset cache of the zone, shared by all clocks showing it
+	 */
+	ZoneOffsetCache getZoneOffset(String id, TimeZone timeZone) {
+		ZoneOffsetCache cache = mZones.get(id);
+		if (cache == null) {
+			cache = new ZoneOffsetCache(id == null ? timeZone : TimeZone.getTimeZone(id));
+			mZones.put(id, cache);
+		} else if (id == null && cache.getTimeZone() != timeZone) {
+			cache.setTimeZone(timeZone);
+		}
+		return cache;
+	}
+
+	/**
+	 * @return the sprites of the hand at the scale, counted for the caller,
+	 * or null if they do not fit the budget of the sprites
+	 */
+	HandSprites acquireSprites(Drawable hand, float scale) {
+		for (int i = 0; i < mSprites.size(); i++) {
+			HandSprites sprites = mSprites.get(i);
+			if (sprites.matches(hand, scale)) {
+				sprites.refs++;
+				return sprites;
+			}
+		}
+		HandSprites sprites = HandSprites.create(hand, scale);
+		if (sprites != null) {
+			sprites.refs = 1;
+			mSprites.add(sprites);
+		}
+		return sprites;
+	}
+
+	/**
+	 * The caller no longer draws the sprites, they are freed with the last one.
+	 */
+	void releaseSprites(HandSprites sprites) {
+		if (--sprites.refs == 0) {
+			mSprites.remove(sprites);
+			sprites.release();
+		}
+	}
+
+	private void trim() {
+		if (mUnusedBytes <= mBudget) {
+			return;
+		}
+		Iterator<Entry> it = mEntries.values().iterator();
+		while (mUnusedBytes > mBudget && it.hasNext()) {
+			Entry entry = it.next();
+			if (entry.refs == 0) {
+				//not recycled, a display list may still point to the bitmap
+				it.remove();
+				mByLayer.remove(entry.layer);
+				mUnusedBytes -= bytesOf(entry.layer);
+			}
+		}
+	}
+
+	private static long bytesOf(FaceCompositor.FaceLayer layer) {
+		return layer.bitmap == null ? 0 : (long) layer.bitmap.getRowBytes() * layer.bitmap.getHeight();
+	}
+}
@@ -0,0 +1,99 @@
+package com.sherchen.realclock;
+
+import android.app.Activity;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.drawable.Drawable;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+/**
+ * Compares the two ways a tick frame draws the second hand: rotating the
+ * hand image and blitting one of the {@link HandSprites}. Every iteration
+ * draws all 60 positions into a software canvas of the clock size, the hand
+ * scaled by the dial as RealAnalogClock3 scales it. Started from the sample
+ * app:
+ * <pre>
+ * adb shell am start -n com.sherchen.realclock/.MainActivity --ei benchmark_sprites 50
+ * adb logcat -s HandSpriteBenchmark
+ * </pre>
+ * This only times the software canvas. The frames of a hardware accelerated
+ * window are measured with the gfxinfo of the sprites layout, once with and
+ * once without sprites:
+ * <pre>
+ * java com.sherchen.realclock.tools.ClockBenchmark frames --scenario=sprites
+ * java com.sherchen.realclock.tools.ClockBenchmark frames --scenario=rotate
+ * </pre>
+ */
+final class HandSpriteBenchmark {
+
+	static final String EXTRA_ITERATIONS = "benchmark_sprites";
+	//false turns the sprites of the clocks in the layout off, to compare the frames
+	static final String EXTRA_SPRITES = "second_sprites";
+
+	private static final String TAG = "HandSpriteBenchmark";
+	private static final int WARMUP = 3;
+
+	private HandSpriteBenchmark() {
+	}
+
+	static void run(Activity activity, int dialId, int handId, int iterations) {
+		Resources res = activity.getResources();
+		DisplayMetrics metrics = res.getDisplayMetrics();
+		int size = Math.min(metrics.widthPixels, metrics.heightPixels);
+		int[] dial = new int[2];
+		if (!FaceCompositor.measureResource(res, dialId, dial)) {
+			Log.w(TAG, "cannot measure the dial " + res.getResourceName(dialId));
+			return;
+		}
+		//the scale of a clock of the size with this dial
+		float scale = Math.min((float) size / dial[0], (float) size / dial[1]);
+		Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+		Canvas canvas = new Canvas(bitmap);
+		Drawable hand = res.getDrawable(handId);
+		int center = size / 2;
+
+		long start = System.nanoTime();
+		HandSprites sprites = HandSprites.create(hand, scale);
+		long created = System.nanoTime() - start;
+		if (sprites == null) {
+			Log.w(TAG, "the sprites do not fit the budget");
+			bitmap.recycle();
+			return;
+		}
+		long bytes = HandSprites.getBytes();
+
+		long[] rotate = new long[iterations];
+		long[] blit = new long[iterations];
+		for (int i = -WARMUP; i < iterations; i++) {
+			long t = 0;
+			for (int second = 0; second < 60; second++) {
+				canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+				long s = System.nanoTime();
+				ClockHands.draw(canvas, center, center, scale, ClockHands.secondDegrees(second), hand);
+				t += System.nanoTime() - s;
+			}
+			long b = 0;
+			for (int second = 0; second < 60; second++) {
+				canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+				long s = System.nanoTime();
+				sprites.draw(canvas, center, center, second, null);
+				b += System.nanoTime() - s;
+			}
+			if (i >= 0) {
+				rotate[i] = t / 60;
+				blit[i] = b / 60;
+			}
+		}
+		sprites.release();
+		bitmap.recycle();
+
+		Log.i(TAG, res.getResourceName(handId) + ", clock " + size + "px, scale " + scale + ", " + iterations + " runs");
+		Log.i(TAG, "sprites " + bytes / 1024 + "KB, rendered in " + created / 1000 + "us");
+		Log.i(TAG, "rotate " + InflationBenchmark.summary(rotate));
+		Log.i(TAG, "sprite " + InflationBenchmark.summary(blit));
+	}
+}
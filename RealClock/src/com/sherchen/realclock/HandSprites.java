@@ -0,0 +1,140 @@
+package com.sherchen.realclock;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+
+/**
+ * The second hand pre-rendered at its tick positions, so a tick frame draws
+ * it with a plain blit instead of rotating and filtering the hand image.
+ * Only the first quarter of the dial is rendered, the positions of the other
+ * quarters are the same sprites turned by a multiple of 90 degrees, which
+ * moves pixels without resampling them. Each sprite is only as large as the
+ * bounding box of the hand at its angle, a long thin hand takes about a
+ * third of the memory a square of its diagonal would.
+ * <p>
+ * The sprites of a hand and scale are shared by all clocks through the
+ * {@link FacePool}. All sprites alive share one budget, a hand which does
+ * not fit is drawn the usual way. Main thread only.
+ */
+final class HandSprites {
+
+	//the tick positions of a quarter of the dial
+	static final int POSITIONS = 15;
+
+	private static long sBudget = Runtime.getRuntime().maxMemory() / 32;
+	private static long sBytes;
+
+	final Drawable hand;
+	final float scale;
+	//the clocks drawing the sprites, counted by the FacePool
+	int refs;
+	private final Bitmap[] mSprites = new Bitmap[POSITIONS];
+	//the sides of each sprite, even so its center is on a pixel corner
+	private final int[] mWidths;
+	private final int[] mHeights;
+	private final long mBytes;
+	private boolean mReleased;
+
+	private HandSprites(Drawable hand, float scale, int[] widths, int[] heights, long bytes) {
+		this.hand = hand;
+		this.scale = scale;
+		mWidths = widths;
+		mHeights = heights;
+		mBytes = bytes;
+	}
+
+	/**
+	 * Render the sprites of the hand at the scale.
+	 * @return null if the hand is empty or the sprites would exceed the budget
+	 */
+	static HandSprites create(Drawable hand, float scale) {
+		int w = (int) (hand.getIntrinsicWidth() * scale);
+		int h = (int) (hand.getIntrinsicHeight() * scale);
+		if (w <= 0 || h <= 0) {
+			return null;
+		}
+		int[] widths = new int[POSITIONS];
+		int[] heights = new int[POSITIONS];
+		long bytes = 0;
+		for (int i = 0; i < POSITIONS; i++) {
+			double radians = Math.toRadians(ClockHands.secondDegrees(i));
+			double sin = Math.abs(Math.sin(radians));
+			double cos = Math.abs(Math.cos(radians));
+			widths[i] = boxSide(w * cos + h * sin);
+			heights[i] = boxSide(w * sin + h * cos);
+			bytes += (long) widths[i] * heights[i] * 4;
+		}
+		if (sBytes + bytes > sBudget) {
+			return null;
+		}
+		HandSprites sprites = new HandSprites(hand, scale, widths, heights, bytes);
+		for (int i = 0; i < POSITIONS; i++) {
+			Bitmap bitmap = Bitmap.createBitmap(widths[i], heights[i], Bitmap.Config.ARGB_8888);
+			ClockHands.draw(new Canvas(bitmap), widths[i] / 2, heights[i] / 2, scale,
+					ClockHands.secondDegrees(i), hand);
+			sprites.mSprites[i] = bitmap;
+		}
+		sBytes += bytes;
+		return sprites;
+	}
+
+	/**
+	 * @return the side of the bounding box rounded up to even, with a pixel
+	 * on each side for the filtered edge
+	 */
+	private static int boxSide(double extent) {
+		int side = (int) Math.ceil(extent - 0.001);
+		return side + (side & 1) + 2;
+	}
+
+	/**
+	 * Set the memory all sprites together may take, sprites already rendered are kept.
+	 */
+	static void setBudget(long bytes) {
+		sBudget = bytes;
+	}
+
+	/**
+	 * @return the memory taken by the sprites alive
+	 */
+	static long getBytes() {
+		return sBytes;
+	}
+
+	boolean matches(Drawable hand, float scale) {
+		return this.hand == hand && this.scale == scale;
+	}
+
+	/**
+	 * @param second the tick position, 0-59
+	 */
+	void draw(Canvas canvas, int centerX, int centerY, int second, Paint paint) {
+		int position = second % POSITIONS;
+		Bitmap sprite = mSprites[position];
+		int quarter = second / POSITIONS;
+		float left = centerX - mWidths[position] / 2;
+		float top = centerY - mHeights[position] / 2;
+		if (quarter == 0) {
+			canvas.drawBitmap(sprite, left, top, paint);
+		} else {
+			canvas.save();
+			canvas.rotate(quarter * 90, centerX, centerY);
+			canvas.drawBitmap(sprite, left, top, paint);
+			canvas.restore();
+		}
+	}
+
+	void release() {
+		if (mReleased) {
+			return;
+		}
+		mReleased = true;
+		sBytes -= mBytes;
+		//left to the collector, a display list may still draw them
+		for (int i = 0; i < POSITIONS; i++) {
+			mSprites[i] = null;
+		}
+	}
+}
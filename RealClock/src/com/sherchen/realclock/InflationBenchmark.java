@@ -0,0 +1,127 @@
+package com.sherchen.realclock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+
+/**
+ * Measures the startup cost of a clock layout: the inflation alone, the
+ * inflation up to the first frame, i.e. measure, layout and one software
+ * draw, and up to the frame with the real face. The first frame shows the
+ * placeholder while the face is composed in the background. Every layout is
+ * run twice, with the layers decoded at inflation and when first needed,
+ * and every iteration starts with an empty {@link FacePool}.
+ * Started from the sample app:
+ * <pre>
+ * adb shell am start -n com.sherchen.realclock/.MainActivity --ei benchmark_inflate 50
+ * adb logcat -s InflationBenchmark
+ * </pre>
+ */
+final class InflationBenchmark {
+
+	static final String EXTRA_ITERATIONS = "benchmark_inflate";
+
+	private static final String TAG = "InflationBenchmark";
+	private static final int WARMUP = 3;
+	//longer than any face takes to compose, a clock still waiting then fails the run
+	private static final long FACE_TIMEOUT = 5000;
+
+	private InflationBenchmark() {
+	}
+
+	static void run(Activity activity, int layoutId, int iterations) {
+		Log.i(TAG, activity.getResources().getResourceName(layoutId) + ", " + iterations + " runs");
+		try {
+			run(activity, layoutId, iterations, false);
+			run(activity, layoutId, iterations, true);
+		} finally {
+			RealAnalogClock3.setEagerDecode(false);
+		}
+	}
+
+	private static void run(Activity activity, int layoutId, int iterations, boolean eager) {
+		RealAnalogClock3.setEagerDecode(eager);
+		LayoutInflater inflater = activity.getLayoutInflater();
+		DisplayMetrics metrics = activity.getResources().getDisplayMetrics();
+		int width = metrics.widthPixels;
+		int height = metrics.heightPixels;
+		Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+		Canvas canvas = new Canvas(bitmap);
+		ArrayList<RealAnalogClock3> clocks = new ArrayList<RealAnalogClock3>();
+
+		long[] inflate = new long[iterations];
+		long[] firstFrame = new long[iterations];
+		long[] realFace = new long[iterations];
+		for (int i = -WARMUP; i < iterations; i++) {
+			FacePool.getInstance().evictUnused();
+			long start = System.nanoTime();
+			View root = inflater.inflate(layoutId, null, false);
+			long inflated = System.nanoTime();
+			root.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+					MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+			root.layout(0, 0, width, height);
+			root.draw(canvas);
+			long drawn = System.nanoTime();
+			clocks.clear();
+			findClocks(root, clocks);
+			boolean ready = true;
+			for (RealAnalogClock3 clock : clocks) {
+				ready &= clock.awaitFace(FACE_TIMEOUT);
+			}
+			root.draw(canvas);
+			long faced = System.nanoTime();
+			//never attached, so never detached, the layers go back to the pool here
+			for (RealAnalogClock3 clock : clocks) {
+				clock.releaseFace();
+			}
+			if (!ready) {
+				Log.w(TAG, "a face was not composed within " + FACE_TIMEOUT + "ms, run dropped");
+				bitmap.recycle();
+				return;
+			}
+			if (i >= 0) {
+				inflate[i] = inflated - start;
+				firstFrame[i] = drawn - start;
+				realFace[i] = faced - start;
+			}
+		}
+		bitmap.recycle();
+
+		Log.i(TAG, eager ? "decoded at inflation" : "decoded when needed");
+		Log.i(TAG, "inflate     " + summary(inflate));
+		Log.i(TAG, "first frame " + summary(firstFrame));
+		Log.i(TAG, "real face   " + summary(realFace));
+	}
+
+	static void findClocks(View view, List<RealAnalogClock3> out) {
+		if (view instanceof RealAnalogClock3) {
+			out.add((RealAnalogClock3) view);
+		} else if (view instanceof ViewGroup) {
+			ViewGroup group = (ViewGroup) view;
+			for (int i = 0; i < group.getChildCount(); i++) {
+				findClocks(group.getChildAt(i), out);
+			}
+		}
+	}
+
+	static String summary(long[] nanos) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		long total = 0;
+		for (long n : sorted) {
+			total += n;
+		}
+		return "median " + sorted[sorted.length / 2] / 1000 + "us, mean " + total / sorted.length / 1000
+				+ "us, min " + sorted[0] / 1000 + "us, max " + sorted[sorted.length - 1] / 1000 + "us";
+	}
+}
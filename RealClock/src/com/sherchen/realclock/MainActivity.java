@@ -1,15 +1,44 @@
 package com.sherchen.realclock;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import android.app.Activity;
 import android.os.Bundle;
 
 public class MainActivity extends Activity {
 
+	//"stress" shows the many-clock layout, "sprites" one clock with a second hand, used by the benchmark
+	static final String EXTRA_LAYOUT = "layout";
+
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
-		setContentView(R.layout.realclock);
+		String layout = getIntent().getStringExtra(EXTRA_LAYOUT);
+		int layoutId = R.layout.realclock;
+		if ("stress".equals(layout)) {
+			layoutId = R.layout.stress;
+		} else if ("sprites".equals(layout)) {
+			layoutId = R.layout.sprites;
+		}
+		setContentView(layoutId);
+		if (!getIntent().getBooleanExtra(HandSpriteBenchmark.EXTRA_SPRITES, true)) {
+			List<RealAnalogClock3> clocks = new ArrayList<RealAnalogClock3>();
+			InflationBenchmark.findClocks(getWindow().getDecorView(), clocks);
+			for (RealAnalogClock3 clock : clocks) {
+				clock.setSecondHandSprites(false);
+			}
+		}
 //		setContentView(R.layout.watch);
+		
+		int iterations = getIntent().getIntExtra(InflationBenchmark.EXTRA_ITERATIONS, 0);
+		if(iterations > 0){
+			InflationBenchmark.run(this, layoutId, iterations);
+		}
+		int spriteIterations = getIntent().getIntExtra(HandSpriteBenchmark.EXTRA_ITERATIONS, 0);
+		if(spriteIterations > 0){
+			HandSpriteBenchmark.run(this, R.drawable.realclock_bg, R.drawable.realclock_second, spriteIterations);
+		}
 	}
 	
 
@@ -0,0 +1,234 @@
+package com.sherchen.realclock;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.RectF;
+import android.os.SystemClock;
+
+/**
+ * The alarm marker and the countdown arc of a clock, kept in a layer of
+ * their own. The layer is only drawn again when the alarm moves or the arc
+ * shrinks by a visible step, i.e. about one pixel along the bezel, not on
+ * every tick. The times the markers are due are handed to the handler of
+ * the clock, nothing polls them.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+final class MarkerLayer {
+
+	static final int DUE_ALARM = 1;
+	static final int DUE_COUNTDOWN = 2;
+
+	private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+	//of the radius of the clock
+	private static final float ARC_RADIUS = 0.92f;
+	private static final float ARC_WIDTH = 0.04f;
+	private static final float MARKER_LENGTH = 0.12f;
+
+	//wall time of the alarm, 0 for none
+	private long mAlarmTime;
+	//the countdown runs on the monotonic clock, the wall time is only for the angle
+	private long mCountdownDue;
+	private long mCountdownEndTime;
+
+	private final Paint mMarkerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+	private final Paint mArcPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+	private final Path mMarkerPath = new Path();
+	private final RectF mArcBounds = new RectF();
+
+	private Bitmap mLayer;
+	private Canvas mLayerCanvas;
+	private int mWidth;
+	private int mHeight;
+	private boolean mDirty = true;
+	private float mShownAlarmDegrees = Float.NaN;
+	private int mShownArcSteps;
+	private float mShownArcEnd = Float.NaN;
+
+	MarkerLayer() {
+		mArcPaint.setStyle(Paint.Style.STROKE);
+		mArcPaint.setStrokeCap(Paint.Cap.BUTT);
+		setColors(0xffd32f2f, 0x80d32f2f);
+	}
+
+	void setColors(int markerColor, int arcColor) {
+		mMarkerPaint.setColor(markerColor);
+		mArcPaint.setColor(arcColor);
+		mDirty = true;
+	}
+
+	void setSize(int width, int height) {
+		if (mWidth != width || mHeight != height) {
+			mWidth = width;
+			mHeight = height;
+			release();
+		}
+	}
+
+	void setAlarm(long timeMillis) {
+		mAlarmTime = timeMillis;
+		mDirty = true;
+	}
+
+	long getAlarm() {
+		return mAlarmTime;
+	}
+
+	void startCountdown(long durationMillis) {
+		mCountdownDue = SystemClock.elapsedRealtime() + durationMillis;
+		mCountdownEndTime = System.currentTimeMillis() + durationMillis;
+		mDirty = true;
+	}
+
+	void cancelCountdown() {
+		mCountdownDue = 0;
+		mDirty = true;
+	}
+
+	/**
+	 * @return the milliseconds left, 0 if no countdown runs
+	 */
+	long getCountdownRemaining() {
+		return mCountdownDue == 0 ? 0 : Math.max(0, mCountdownDue - SystemClock.elapsedRealtime());
+	}
+
+	boolean isEmpty() {
+		return mAlarmTime == 0 && mCountdownDue == 0;
+	}
+
+	/**
+	 * @return the delay until the next marker is due, or -1 if none is set
+	 */
+	long getNextDelay(long now) {
+		long delay = -1;
+		if (mAlarmTime != 0) {
+			delay = Math.max(0, mAlarmTime - now);
+		}
+		if (mCountdownDue != 0) {
+			long countdown = Math.max(0, mCountdownDue - SystemClock.elapsedRealtime());
+			delay = delay < 0 ? countdown : Math.min(delay, countdown);
+		}
+		return delay;
+	}
+
+	/**
+	 * Clear the markers which are due.
+	 * @return {@link #DUE_ALARM} and {@link #DUE_COUNTDOWN} of the cleared markers
+	 */
+	int takeDue(long now) {
+		int due = 0;
+		if (mAlarmTime != 0 && now >= mAlarmTime) {
+			mAlarmTime = 0;
+			due |= DUE_ALARM;
+		}
+		if (mCountdownDue != 0 && SystemClock.elapsedRealtime() >= mCountdownDue) {
+			mCountdownDue = 0;
+			due |= DUE_COUNTDOWN;
+		}
+		if (due != 0) {
+			mDirty = true;
+		}
+		return due;
+	}
+
+	/**
+	 * Bring the layer to the given time.
+	 * @return true if the layer was drawn again
+	 */
+	boolean update(long now, ZoneOffsetCache zone) {
+		if (mWidth <= 0 || mHeight <= 0) {
+			return false;
+		}
+		float alarmDegrees = Float.NaN;
+		if (mAlarmTime != 0) {
+			alarmDegrees = ClockHands.hourDegrees(localHours(mAlarmTime, zone) % 12);
+		}
+		int arcSteps = 0;
+		float arcEnd = Float.NaN;
+		float stepDegrees = getArcStepDegrees();
+		long remaining = getCountdownRemaining();
+		if (remaining > 0) {
+			//a full ring for an hour or more
+			float sweep = Math.min(360.0f, remaining * 360.0f / HOUR_MILLIS);
+			arcSteps = (int) Math.ceil(sweep / stepDegrees);
+			arcEnd = ClockHands.minuteDegrees(localHours(mCountdownEndTime, zone) % 1 * 60);
+		}
+		if (!mDirty && mLayer != null && same(alarmDegrees, mShownAlarmDegrees)
+				&& arcSteps == mShownArcSteps && same(arcEnd, mShownArcEnd)) {
+			return false;
+		}
+		mDirty = false;
+		mShownAlarmDegrees = alarmDegrees;
+		mShownArcSteps = arcSteps;
+		mShownArcEnd = arcEnd;
+		render(alarmDegrees, arcEnd, Math.min(360.0f, arcSteps * stepDegrees));
+		return true;
+	}
+
+	void draw(Canvas canvas) {
+		if (mLayer != null && !isEmpty()) {
+			canvas.drawBitmap(mLayer, 0, 0, null);
+		}
+	}
+
+	void release() {
+		//not recycled, a frame recorded before may still draw it
+		mLayer = null;
+		mLayerCanvas = null;
+		mDirty = true;
+	}
+
+	/**
+	 * @return the angle of one pixel along the arc
+	 */
+	private float getArcStepDegrees() {
+		float radius = Math.max(1.0f, Math.min(mWidth, mHeight) / 2 * ARC_RADIUS);
+		return (float) (360.0 / (2 * Math.PI * radius));
+	}
+
+	private static float localHours(long millis, ZoneOffsetCache zone) {
+		long local = millis + zone.getOffset(millis);
+		return (float) (local % (24 * HOUR_MILLIS)) / HOUR_MILLIS;
+	}
+
+	private static boolean same(float a, float b) {
+		return a == b || (Float.isNaN(a) && Float.isNaN(b));
+	}
+
+	private void render(float alarmDegrees, float arcEnd, float arcSweep) {
+		if (mLayer == null) {
+			mLayer = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+			mLayerCanvas = new Canvas(mLayer);
+		}
+		final Canvas canvas = mLayerCanvas;
+		canvas.drawColor(0, PorterDuff.Mode.CLEAR);
+		float centerX = mWidth / 2.0f;
+		float centerY = mHeight / 2.0f;
+		float radius = Math.min(centerX, centerY);
+
+		if (!Float.isNaN(arcEnd)) {
+			float arcRadius = radius * ARC_RADIUS;
+			mArcPaint.setStrokeWidth(radius * ARC_WIDTH);
+			mArcBounds.set(centerX - arcRadius, centerY - arcRadius, centerX + arcRadius, centerY + arcRadius);
+			//0 degrees of the canvas is at 3 o'clock, the hands start at 12
+			canvas.drawArc(mArcBounds, arcEnd - 90.0f - arcSweep, arcSweep, false, mArcPaint);
+		}
+		if (!Float.isNaN(alarmDegrees)) {
+			//a small triangle at the bezel pointing to the center
+			float tip = radius * (1.0f - MARKER_LENGTH);
+			float half = radius * MARKER_LENGTH / 3;
+			mMarkerPath.reset();
+			mMarkerPath.moveTo(centerX, centerY - tip);
+			mMarkerPath.lineTo(centerX - half, centerY - radius);
+			mMarkerPath.lineTo(centerX + half, centerY - radius);
+			mMarkerPath.close();
+			canvas.save();
+			canvas.rotate(alarmDegrees, centerX, centerY);
+			canvas.drawPath(mMarkerPath, mMarkerPaint);
+			canvas.restore();
+		}
+	}
+}
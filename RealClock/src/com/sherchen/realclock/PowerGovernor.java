@@ -0,0 +1,303 @@
+package com.sherchen.realclock;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Decides how often the clocks may draw from the state of the device. On a
+ * low battery, in power save mode or on a hot device the sweeping and
+ * animated modes drop to a 1Hz tick, and further to one update a minute
+ * driven by {@link Intent#ACTION_TIME_TICK}. The clocks learn of a new
+ * level through {@link TimeEventHub#ACTION_TICK_LEVEL_CHANGED} on their
+ * time listener, so every RealAnalogClock variant follows it.
+ * <p>
+ * The battery broadcast also carries the temperature and comes whenever it
+ * changes, so the governor needs no polling. Power save mode (API 21) and
+ * the thermal status (API 29) are read when the device has them.
+ * Each battery and temperature restriction, once entered, is only left when
+ * the value is a few percent or degrees past its threshold again, whichever
+ * restriction gives the level meanwhile.
+ * <p>
+ * Get it from {@link TimeEventHub#getPowerGovernor()}. It runs while the
+ * hub has listeners, all methods must be called on the main thread.
+ */
+public final class PowerGovernor {
+
+	private static final String TAG = "PowerGovernor";
+	private static final boolean DEBUG = false;
+
+	/** One update a minute. */
+	public static final int LEVEL_MINUTE = 0;
+	/** The 1Hz tick, no animation. */
+	public static final int LEVEL_TICK = 1;
+	/** No restriction, sweeping and animated modes run at their rate. */
+	public static final int LEVEL_SWEEP = 2;
+
+	public static final int REASON_NONE = 0;
+	public static final int REASON_BATTERY = 1;
+	public static final int REASON_POWER_SAVE = 2;
+	public static final int REASON_THERMAL = 3;
+	public static final int REASON_LIMIT = 4;
+
+	public interface OnLevelChangeListener {
+		/**
+		 * @param reason why the level is below {@link #LEVEL_SWEEP}, {@link #REASON_NONE} if it is not
+		 */
+		void onLevelChanged(int level, int reason);
+	}
+
+	//in percent, while not charging
+	private static final int LOW_BATTERY = 15;
+	private static final int CRITICAL_BATTERY = 5;
+	//battery temperature in tenths of a degree Celsius
+	private static final int WARM_TEMPERATURE = 420;
+	private static final int HOT_TEMPERATURE = 470;
+	//a restriction is only lifted past these, so a value wavering around a
+	//threshold does not switch the clocks between levels with every broadcast
+	private static final int LOW_BATTERY_RELEASE = 20;
+	private static final int CRITICAL_BATTERY_RELEASE = 8;
+	private static final int WARM_TEMPERATURE_RELEASE = 400;
+	private static final int HOT_TEMPERATURE_RELEASE = 450;
+	//PowerManager.THERMAL_STATUS_MODERATE and THERMAL_STATUS_SEVERE of API 29
+	private static final int THERMAL_STATUS_MODERATE = 2;
+	private static final int THERMAL_STATUS_SEVERE = 3;
+	//PowerManager.ACTION_POWER_SAVE_MODE_CHANGED of API 21
+	private static final String ACTION_POWER_SAVE_MODE_CHANGED = "android.os.action.POWER_SAVE_MODE_CHANGED";
+
+	private final Context mContext;
+	private final PowerManager mPowerManager;
+	private final Runnable mOnChange;
+	private final ArrayList<OnLevelChangeListener> mListeners = new ArrayList<OnLevelChangeListener>();
+	private Method mIsPowerSaveMode;
+	private Method mGetThermalStatus;
+
+	private boolean mRunning;
+	private Intent mBattery;
+	private int mLevel = LEVEL_SWEEP;
+	private int mReason = REASON_NONE;
+	private int mMaxLevel = LEVEL_SWEEP;
+	//the restrictions entered and not yet left, kept whichever of them gives the level
+	private boolean mHot;
+	private boolean mWarm;
+	private boolean mCritical;
+	private boolean mLow;
+
+	//metrics
+	private int mDowngrades;
+	private final int[] mDowngradesByReason = new int[REASON_LIMIT + 1];
+	private final long[] mTimeAtLevel = new long[LEVEL_SWEEP + 1];
+	private long mLevelSince = SystemClock.elapsedRealtime();
+
+	/**
+	 * @param onChange run after a change of the level, before the listeners
+	 */
+	PowerGovernor(Context context, Runnable onChange) {
+		mContext = context;
+		mOnChange = onChange;
+		mPowerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+		try {
+			mIsPowerSaveMode = PowerManager.class.getMethod("isPowerSaveMode");
+		} catch (NoSuchMethodException e) {
+			//before API 21
+		}
+		try {
+			mGetThermalStatus = PowerManager.class.getMethod("getCurrentThermalStatus");
+		} catch (NoSuchMethodException e) {
+			//before API 29
+		}
+	}
+
+	void start() {
+		if (mRunning) {
+			return;
+		}
+		mRunning = true;
+		IntentFilter filter = new IntentFilter();
+		filter.addAction(Intent.ACTION_BATTERY_CHANGED);
+		filter.addAction(ACTION_POWER_SAVE_MODE_CHANGED);
+		//the battery broadcast is sticky, the current state comes right back
+		Intent battery = mContext.registerReceiver(mReceiver, filter);
+		if (battery != null) {
+			mBattery = battery;
+		}
+		evaluate();
+	}
+
+	void stop() {
+		if (mRunning) {
+			mContext.unregisterReceiver(mReceiver);
+			mRunning = false;
+		}
+	}
+
+	/**
+	 * @return one of the LEVEL_ constants
+	 */
+	public int getLevel() {
+		return mLevel;
+	}
+
+	/**
+	 * @return why the level is below {@link #LEVEL_SWEEP}
+	 */
+	public int getReason() {
+		return mReason;
+	}
+
+	/**
+	 * Cap the level independent of the device state, e.g. from a setting.
+	 */
+	public void setMaxLevel(int level) {
+		mMaxLevel = Math.max(LEVEL_MINUTE, Math.min(LEVEL_SWEEP, level));
+		evaluate();
+	}
+
+	public void addOnLevelChangeListener(OnLevelChangeListener listener) {
+		if (!mListeners.contains(listener)) {
+			mListeners.add(listener);
+		}
+	}
+
+	public void removeOnLevelChangeListener(OnLevelChangeListener listener) {
+		mListeners.remove(listener);
+	}
+
+	/**
+	 * @return how often the level went down since the process started
+	 */
+	public int getDowngradeCount() {
+		return mDowngrades;
+	}
+
+	public int getDowngradeCount(int reason) {
+		return mDowngradesByReason[reason];
+	}
+
+	/**
+	 * @return the milliseconds spent on the level since the process started
+	 */
+	public long getTimeAtLevel(int level) {
+		long time = mTimeAtLevel[level];
+		if (level == mLevel) {
+			time += SystemClock.elapsedRealtime() - mLevelSince;
+		}
+		return time;
+	}
+
+	private void evaluate() {
+		int level = LEVEL_SWEEP;
+		int reason = REASON_NONE;
+
+		int thermal = getThermalStatus();
+		int temperature = -1;
+		int percent = -1;
+		boolean charging = false;
+		if (mBattery != null) {
+			temperature = mBattery.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, -1);
+			int scale = mBattery.getIntExtra(BatteryManager.EXTRA_SCALE, 100);
+			int battery = mBattery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+			if (battery >= 0 && scale > 0) {
+				percent = battery * 100 / scale;
+			}
+			charging = mBattery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+		}
+
+		//a restriction in force is measured against its release threshold
+		mHot = temperature >= (mHot ? HOT_TEMPERATURE_RELEASE : HOT_TEMPERATURE);
+		mWarm = temperature >= (mWarm ? WARM_TEMPERATURE_RELEASE : WARM_TEMPERATURE);
+		boolean discharging = !charging && percent >= 0;
+		mCritical = discharging && percent <= (mCritical ? CRITICAL_BATTERY_RELEASE : CRITICAL_BATTERY);
+		mLow = discharging && percent <= (mLow ? LOW_BATTERY_RELEASE : LOW_BATTERY);
+
+		//the strongest restriction wins, the order gives the reason on a tie
+		if (thermal >= THERMAL_STATUS_SEVERE || mHot) {
+			level = LEVEL_MINUTE;
+			reason = REASON_THERMAL;
+		} else if (mCritical) {
+			level = LEVEL_MINUTE;
+			reason = REASON_BATTERY;
+		} else if (thermal >= THERMAL_STATUS_MODERATE || mWarm) {
+			level = LEVEL_TICK;
+			reason = REASON_THERMAL;
+		} else if (isPowerSaveMode()) {
+			level = LEVEL_TICK;
+			reason = REASON_POWER_SAVE;
+		} else if (mLow) {
+			level = LEVEL_TICK;
+			reason = REASON_BATTERY;
+		}
+		if (mMaxLevel < level) {
+			level = mMaxLevel;
+			reason = REASON_LIMIT;
+		}
+		setLevel(level, reason);
+	}
+
+	private void setLevel(int level, int reason) {
+		if (level == mLevel && reason == mReason) {
+			return;
+		}
+		long now = SystemClock.elapsedRealtime();
+		mTimeAtLevel[mLevel] += now - mLevelSince;
+		mLevelSince = now;
+		if (level < mLevel) {
+			mDowngrades++;
+			mDowngradesByReason[reason]++;
+		}
+		boolean changed = level != mLevel;
+		mLevel = level;
+		mReason = reason;
+		if (DEBUG) {
+			Log.i(TAG, "level " + level + ", reason " + reason);
+		}
+		if (!changed) {
+			return;
+		}
+		mOnChange.run();
+		for (int i = mListeners.size() - 1; i >= 0; i--) {
+			mListeners.get(i).onLevelChanged(level, reason);
+		}
+	}
+
+	private boolean isPowerSaveMode() {
+		if (mIsPowerSaveMode == null || mPowerManager == null) {
+			return false;
+		}
+		try {
+			return (Boolean) mIsPowerSaveMode.invoke(mPowerManager);
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private int getThermalStatus() {
+		if (mGetThermalStatus == null || mPowerManager == null) {
+			return 0;
+		}
+		try {
+			return (Integer) mGetThermalStatus.invoke(mPowerManager);
+		} catch (Exception e) {
+			return 0;
+		}
+	}
+
+	private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+		@Override
+		public void onReceive(Context context, Intent intent) {
+			if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+				mBattery = intent;
+			}
+			//the thermal status has no broadcast, it is read along with the battery
+			evaluate();
+		}
+	};
+}
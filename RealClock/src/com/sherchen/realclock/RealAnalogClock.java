@@ -18,10 +18,8 @@ package com.sherchen.realclock;
 
 import java.util.TimeZone;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
@@ -79,6 +77,8 @@ public class RealAnalogClock extends View {
     private boolean m_HideHourHand = false;
     private boolean m_HideMinuteHand = false;
     private boolean m_HideSecondHand = false;
+    //how often the PowerGovernor lets the clock draw
+    private int m_TickLevel = PowerGovernor.LEVEL_SWEEP;
     private boolean m_HideDial = false;
     private boolean m_HideBrand = false;
     
@@ -233,42 +233,40 @@ public class RealAnalogClock extends View {
 
         if (!m_IsAttachedToWindow) {
             m_IsAttachedToWindow = true;
-            IntentFilter filter = new IntentFilter();
-
-            filter.addAction(Intent.ACTION_TIME_TICK);
-            filter.addAction(Intent.ACTION_TIME_CHANGED);
-            filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
-
-            getContext().registerReceiver(mIntentReceiver, filter);
+            TimeEventHub.getInstance(getContext()).subscribe(mTimeListener);
         }
+        m_TickLevel = TimeEventHub.getInstance(getContext()).getTickLevel();
 
-		send();
+        TimeEventHub.getInstance(getContext()).notifyClockAttached(this);
 		
-        // NOTE: It's safe to do these after registering the receiver since the receiver always runs
-        // in the main thread, therefore the receiver can't run before this method returns.
+        // NOTE: It's safe to do these after subscribing since the hub always dispatches
+        // in the main thread, therefore the listener can't run before this method returns.
 
         // The time zone may have changed while the receiver wasn't registered, so update the Time
-        m_CurrentTime = new Time();
+        m_CurrentTime = new Time(TimeEventHub.getInstance(getContext()).getTimeZone().getID());
 
         // Make sure we update to the current time
         onTimeChanged();
-        mHandler.sendEmptyMessageDelayed(MSG_ONESECOND, ONESECOND);
+        scheduleTick();
     }
-	
-	private static final String ACTION_ATTACH_CONTAINER = "com.sherchen.clockui.attach_container";
-
-    private void send(){
-        Intent intent = new Intent(ACTION_ATTACH_CONTAINER);
-        getContext().sendBroadcast(intent);
+    
+    private void scheduleTick(){
+    	mHandler.removeMessages(MSG_ONESECOND);
+    	//at LEVEL_MINUTE the TIME_TICK of the hub moves the hands
+    	if(m_TickLevel >= PowerGovernor.LEVEL_TICK){
+    		mHandler.sendEmptyMessageDelayed(MSG_ONESECOND, ONESECOND);
+    	}
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         if (m_IsAttachedToWindow) {
-            getContext().unregisterReceiver(mIntentReceiver);
+            TimeEventHub.getInstance(getContext()).unsubscribe(mTimeListener);
             m_IsAttachedToWindow = false;
         }
+        //else the tick keeps posting itself and holds the detached clock
+        mHandler.removeMessages(MSG_ONESECOND);
     }
 
     @Override
@@ -366,7 +364,7 @@ public class RealAnalogClock extends View {
 			canvas.restore();
 		}
         //---------------draw second hand --------------------------------
-		if (!m_HideSecondHand && changed) {
+		if (!m_HideSecondHand && m_TickLevel >= PowerGovernor.LEVEL_TICK && changed) {
 			canvas.save();
 			canvas.rotate(m_CurrentSeconds / 60.0f * 360.0f, centerX, centerY);
 			final Drawable secondHand = m_SecondHandDraw;
@@ -434,7 +432,9 @@ public class RealAnalogClock extends View {
 			case MSG_ONESECOND:
 	            onTimeChanged();
 	            invalidate();
-	            mHandler.sendEmptyMessageDelayed(MSG_ONESECOND, ONESECOND);
+	            if(m_TickLevel >= PowerGovernor.LEVEL_TICK){
+	            	mHandler.sendEmptyMessageDelayed(MSG_ONESECOND, ONESECOND);
+	            }
 				break;
 
 			default:
@@ -444,12 +444,14 @@ public class RealAnalogClock extends View {
     	}
     }
     
-    private final BroadcastReceiver mIntentReceiver = new BroadcastReceiver() {
+    private final TimeEventHub.TimeListener mTimeListener = new TimeEventHub.TimeListener() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            if (intent.getAction().equals(Intent.ACTION_TIMEZONE_CHANGED)) {
-                String tz = intent.getStringExtra("time-zone");
-                m_CurrentTime = new Time(TimeZone.getTimeZone(tz).getID());
+        public void onTimeEvent(String action, TimeZone timeZone) {
+            if (action.equals(Intent.ACTION_TIMEZONE_CHANGED)) {
+                m_CurrentTime = new Time(timeZone.getID());
+            } else if (action.equals(TimeEventHub.ACTION_TICK_LEVEL_CHANGED)) {
+                m_TickLevel = TimeEventHub.getInstance(getContext()).getTickLevel();
+                scheduleTick();
             }
             onTimeChanged();
             invalidate();
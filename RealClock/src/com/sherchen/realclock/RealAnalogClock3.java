@@ -16,33 +16,53 @@
 
 package com.sherchen.realclock;
 
+import java.util.Formatter;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
+import android.text.format.DateFormat;
 import android.text.format.DateUtils;
-import android.text.format.Time;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.accessibility.AccessibilityManager;
+import android.view.animation.AnimationUtils;
+import android.view.animation.Interpolator;
+import android.view.animation.OvershootInterpolator;
 
 //import android.R;
 
 /**
  * This widget display an analogic clock with three hands for hours,
- * minutes and seconds. 
+ * minutes and seconds. It is a ViewGroup only for the chronograph, which
+ * is drawn by a child view so its frames do not redraw the face.
  */
-public class RealAnalogClock3 extends View {
+public class RealAnalogClock3 extends ViewGroup {
+	
+	/**
+	 * Told when a marker set on the clock is due, on the main thread.
+	 */
+	public interface OnMarkerListener {
+		void onAlarm(RealAnalogClock3 clock, long timeMillis);
+		void onCountdownFinished(RealAnalogClock3 clock);
+	}
 	
 	/**
 	 * 
@@ -56,25 +76,42 @@ public class RealAnalogClock3 extends View {
 	private static final int DRAW_TYPE_MINUTE = 1;
 	private static final int DRAW_TYPE_HOUR = 2;
 
-	private static final boolean DEBUG = true;
+	//decode every layer at inflation instead of when first needed, to compare both in InflationBenchmark
+	private static boolean sEagerDecode;
+
+	//verbose logging of layout, off in builds that run many clocks like the stress layout
+	private static final boolean DEBUG = false;
 	private static final String TAG = "RealAnalogClock";
 	private void debug(String msg){
 		if(DEBUG) android.util.Log.v(TAG, msg);
 	}
 	
-    private Time m_CurrentTime;
+    private ZoneOffsetCache m_ZoneOffset;
+    //null means the clock follows the device time zone
+    private String m_TimeZoneId;
 
     private Drawable m_HourHandDraw;
     private Drawable m_MinuteHandDraw;
     private Drawable m_SecondHandDraw;
     private Drawable m_DialDraw;
     private Drawable m_BrandDraw;
+    //only the ids are kept at inflation, a layer is decoded when it is first needed and never if hidden
+    private int m_DialId;
+    private int m_BrandId;
+    private int m_HourHandId;
+    private int m_MinuteHandId;
+    private int m_SecondHandId;
     
     private int m_HourCenterOffset;
     private int m_MinuteCenterOffset;
     private int m_SecondCenterOffset;
     
     private int m_BrandMarginTop;
+    //the values of the attributes or of bind, a FacePack only overrides them while it is set
+    private int m_BaseHourCenterOffset;
+    private int m_BaseMinuteCenterOffset;
+    private int m_BaseSecondCenterOffset;
+    private int m_BaseBrandMarginTop;
 
     private boolean m_HideHourHand = false;
     private boolean m_HideMinuteHand = false;
@@ -87,17 +124,90 @@ public class RealAnalogClock3 extends View {
     //it is used to move the clock to the center of larger axis
 //    if the height is larger than the width,then move to the center of height
     private int m_ClockOffset;
-//    private int mDialWidth;
-//    private int mDialHeight;
+    //the size of the dial once loaded, known before its pixels are decoded
+    private int m_DialWidth;
+    private int m_DialHeight;
+    
+    //the dial and brand composed at the current size, null until the background work is done
+    private FaceCompositor.FaceLayer m_FaceLayer;
+    //the layer belongs to the FacePool and is given back when replaced
+    private boolean m_FacePooled;
+    private Future<FaceCompositor.FaceLayer> m_FacePending;
+    private int m_FaceGeneration;
+    private final Paint m_PlaceholderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    
+    //set through setFace or built at size time in atlas mode, all layers are drawn from this one bitmap
+    private FacePack m_Face;
+    private boolean m_AtlasMode;
+    private FaceAtlas m_Atlas;
+    private final Paint m_AtlasPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect m_AtlasDst = new Rect();
 
     private boolean m_IsAttachedToWindow;
+    //no frames while the window is hidden
+    private boolean m_WindowHidden;
+    
+    //the face is given by resource ids alone, so its layer and drawables are shared
+    //through the FacePool, with the other clocks and with the clocks of a re-created activity
+    private boolean m_PooledFace = true;
+    //a layer of the same face at another size, stretched until the one of this size is ready
+    private FaceCompositor.FaceLayer m_InterimLayer;
+    private final FacePool.Key m_PoolKey = new FacePool.Key();
+
+    //m_ZoneOffset belongs to the FacePool, it must not be given another zone
+    private boolean m_SharedZone;
 
     private final ClockHandler mHandler = new ClockHandler();
     private float m_CurrentSeconds;//0-59
     private float m_CurrentMinutes;//0-59
     private float m_CurrentHour;//0-24
     
+    //tick animation, the hands ease from the angles of the last second to the current ones
+    private int m_TickDuration;//0 snaps the hands
+    private Interpolator m_TickInterpolator;
+    private boolean m_TickAnimating;
+    private long m_TickStart;
+    private float m_FromHourDegrees;
+    private float m_FromMinuteDegrees;
+    private float m_FromSecondDegrees;
+    
+    //the hands move continuously, redrawn every frame instead of once a second
+    private boolean m_SweepMode;
+    //in tick mode the second hand is blitted from pre-rendered sprites, null until first drawn
+    private boolean m_SecondSpritesMode;
+    private HandSprites m_SecondSprites;
+    //the hand and scale whose sprites did not fit the budget, not tried again every frame
+    private Drawable m_SpritesRefusedHand;
+    private float m_SpritesRefusedScale;
+    //how often the PowerGovernor lets the clock draw
+    private int m_TickLevel = PowerGovernor.LEVEL_SWEEP;
+    
+    //digital time and date over the dial, null until enabled
+    private DigitalOverlay m_Digital;
+    
+    //stopwatch sub-dials, null until enabled. Drawn by their own child view, a running
+    //stopwatch redraws only that view every frame
+    private Chronograph m_Chronograph;
+    private ChronographView m_ChronographView;
+    private int m_ChronographFrameDelay = TICK_FRAME_DELAY;
+    
+    //the GMT hand and the sub-dials of other zones, null until one is shown
+    private ZoneDials m_ZoneDials;
+    
+    //alarm marker and countdown arc, null until one is set
+    private MarkerLayer m_Markers;
+    private OnMarkerListener m_OnMarkerListener;
+    
+    //the content description is only formatted again when the shown minute changes
+    private AccessibilityManager m_AccessibilityManager;
+    private final StringBuilder m_DescriptionBuilder = new StringBuilder(16);
+    private final Formatter m_DescriptionFormatter = new Formatter(m_DescriptionBuilder);
+    private long m_DescribedMinute = -1;
+    
     private boolean m_NeedRedraw;
+    //set by onDraw for dispatchDraw, which draws the hands over the chronograph view
+    private boolean m_DrawHands;
+    private float m_HandScale;
 
     Context mContext;
     Resources mResources;
@@ -114,6 +224,7 @@ public class RealAnalogClock3 extends View {
                        int defStyle) {
         super(context, attrs, defStyle);
         mContext = context;
+        setWillNotDraw(false);
         
         mResources = mContext.getResources();
 
@@ -123,107 +234,806 @@ public class RealAnalogClock3 extends View {
         m_MinuteCenterOffset = a.getDimensionPixelSize(R.styleable.RealAnalogClock_clock_minute_center_offset, DEFAULT_MINUTE_CENTER_OFFSET);
         m_SecondCenterOffset = a.getDimensionPixelSize(R.styleable.RealAnalogClock_clock_second_center_offset, DEFAULT_SECOND_CENTER_OFFSET);
         
-        m_DialDraw = a.getDrawable(R.styleable.RealAnalogClock_clock_dial);
+        //the dial and brand are decoded off the UI thread once the size is known
+        m_DialId = a.getResourceId(R.styleable.RealAnalogClock_clock_dial, 0);
         
-        if(m_DialDraw == null){
+        if(m_DialId == 0){
         	m_HideDial = true;
         }
 
-        m_BrandDraw = a.getDrawable(R.styleable.RealAnalogClock_clock_brand);
-        if(m_BrandDraw == null){
+        m_BrandId = a.getResourceId(R.styleable.RealAnalogClock_clock_brand, 0);
+        if(m_BrandId == 0){
         	m_HideBrand = true;
         }
         
         m_BrandMarginTop = a.getDimensionPixelSize(R.styleable.RealAnalogClock_clock_brand_margin_top, DEFAULT_BRAND_MARGIN_TOP);
+        saveBaseLayout();
         
-        m_HourHandDraw = a.getDrawable(R.styleable.RealAnalogClock_clock_pointer_hour);
-        if(m_HourHandDraw == null){
+        m_HourHandId = a.getResourceId(R.styleable.RealAnalogClock_clock_pointer_hour, 0);
+        if(m_HourHandId == 0){
         	m_HideHourHand = true;
         }
         
-        m_MinuteHandDraw = a.getDrawable(R.styleable.RealAnalogClock_clock_pointer_minute);
-        if(m_MinuteHandDraw == null){
+        m_MinuteHandId = a.getResourceId(R.styleable.RealAnalogClock_clock_pointer_minute, 0);
+        if(m_MinuteHandId == 0){
         	m_HideMinuteHand = true;
         }
         
-		m_SecondHandDraw = a.getDrawable(R.styleable.RealAnalogClock_clock_pointer_second);
-		if(m_SecondHandDraw == null){
+		m_SecondHandId = a.getResourceId(R.styleable.RealAnalogClock_clock_pointer_second, 0);
+		if(m_SecondHandId == 0){
 			m_HideSecondHand = true;
 		}
 		
+		m_TimeZoneId = a.getString(R.styleable.RealAnalogClock_clock_timezone);
+		
+		int tickDuration = a.getInt(R.styleable.RealAnalogClock_clock_tick_duration, 0);
+		int interpolatorId = a.getResourceId(R.styleable.RealAnalogClock_clock_tick_interpolator, 0);
+		setTickAnimation(tickDuration, interpolatorId == 0 ? null : AnimationUtils.loadInterpolator(context, interpolatorId));
+		m_AtlasMode = a.getBoolean(R.styleable.RealAnalogClock_clock_atlas, false);
+		m_SweepMode = a.getBoolean(R.styleable.RealAnalogClock_clock_sweep, false);
+		m_SecondSpritesMode = a.getBoolean(R.styleable.RealAnalogClock_clock_second_sprites, false);
+		if(a.getBoolean(R.styleable.RealAnalogClock_clock_chronograph, false)){
+			m_Chronograph = new Chronograph();
+			m_ChronographView = new ChronographView(context, m_Chronograph);
+			addView(m_ChronographView);
+		}
+		if(a.getBoolean(R.styleable.RealAnalogClock_clock_gmt_hand, false)){
+			m_ZoneDials = new ZoneDials();
+			m_ZoneDials.setChronograph(m_Chronograph != null);
+			m_ZoneDials.setGmtHand(a.getString(R.styleable.RealAnalogClock_clock_gmt_timezone),
+					TimeEventHub.getInstance(context).getTimeZone());
+		}
+		boolean digitalTime = a.getBoolean(R.styleable.RealAnalogClock_clock_digital_time, false);
+		boolean digitalDate = a.getBoolean(R.styleable.RealAnalogClock_clock_digital_date, false);
+		if(digitalTime || digitalDate){
+			m_Digital = new DigitalOverlay(context);
+			m_Digital.setContent(digitalTime, a.getBoolean(R.styleable.RealAnalogClock_clock_digital_seconds, false), digitalDate);
+			m_Digital.setTextSize(a.getDimension(R.styleable.RealAnalogClock_clock_digital_text_size, 0));
+			m_Digital.setColor(a.getColor(R.styleable.RealAnalogClock_clock_digital_text_color, DEFAULT_DIGITAL_COLOR));
+			m_Digital.setMarginBottom(a.getDimensionPixelSize(R.styleable.RealAnalogClock_clock_digital_margin_bottom, 0));
+		}
+		
 		a.recycle();
-        m_CurrentTime = new Time();
+		if(sEagerDecode){
+			if(!m_HideDial){
+				m_DialDraw = loadDrawable(m_DialId);
+			}
+			if(!m_HideBrand){
+				m_BrandDraw = loadDrawable(m_BrandId);
+			}
+			loadHands();
+		}
+        m_ZoneOffset = new ZoneOffsetCache(resolveTimeZone());
+        m_PlaceholderPaint.setColor(PLACEHOLDER_COLOR);
+        m_AccessibilityManager = (AccessibilityManager) context.getSystemService(Context.ACCESSIBILITY_SERVICE);
+    }
+    
+    private TimeZone resolveTimeZone(){
+    	return m_TimeZoneId == null ? TimeZone.getDefault() : TimeZone.getTimeZone(m_TimeZoneId);
     }
     
     //===================================================================
     public void setSecondHand(int id){
-    	 m_SecondHandDraw = mResources.getDrawable(id);
+    	m_SecondHandId = id;
+    	m_SecondHandDraw = null;
+    	onHandChanged();
     }
     
     public void setSecondHand(Drawable drawable){
     	m_SecondHandDraw = drawable;
+    	onHandChanged();
     }
     
     public void setSecondHand(Bitmap bitmap){
-    	m_SecondHandDraw = new BitmapDrawable(bitmap);
+    	setSecondHand(new BitmapDrawable(bitmap));
     }
     
     public void setMinuteHand(int id){
-    	m_MinuteHandDraw = mResources.getDrawable(id);
+    	m_MinuteHandId = id;
+    	m_MinuteHandDraw = null;
+    	onHandChanged();
     }
     
     public void setMinuteHand(Drawable drawable){
     	m_MinuteHandDraw = drawable;
+    	onHandChanged();
     }
     
     public void setMinuteHand(Bitmap bitmap){
-    	m_MinuteHandDraw = new BitmapDrawable(bitmap);
+    	setMinuteHand(new BitmapDrawable(bitmap));
     }
     
     public void setHourHand(int id){
-    	m_HourHandDraw = mResources.getDrawable(id);
+    	m_HourHandId = id;
+    	m_HourHandDraw = null;
+    	onHandChanged();
     }
     
     public void setHourHand(Drawable drawable){
     	m_HourHandDraw = drawable;
+    	onHandChanged();
     }
     
     public void setHourHand(Bitmap bitmap){
-    	m_HourHandDraw = new BitmapDrawable(bitmap);
+    	setHourHand(new BitmapDrawable(bitmap));
+    }
+    
+    private void onHandChanged(){
+    	if(getWidth() > 0){
+    		loadHands();
+    	}
+    	//the hands are part of the atlas
+    	if(m_AtlasMode){
+    		requestFace(getWidth(), getHeight());
+    	}
+    }
+    
+    /**
+     * Pack the dial, brand and hands into one bitmap at their final size, so
+     * a frame needs a single texture. Meant for many clocks on weak GPUs.
+     */
+    public void setAtlasMode(boolean atlasMode){
+    	if(m_AtlasMode == atlasMode){
+    		return;
+    	}
+    	m_AtlasMode = atlasMode;
+    	if(m_Face == null){
+    		m_Atlas = null;
+    		m_BrandMarginTop = m_BaseBrandMarginTop;
+    		m_HourCenterOffset = m_BaseHourCenterOffset;
+    		m_MinuteCenterOffset = m_BaseMinuteCenterOffset;
+    		m_SecondCenterOffset = m_BaseSecondCenterOffset;
+    		setFaceLayer(null, false);
+    		requestFace(getWidth(), getHeight());
+    		m_NeedRedraw = true;
+    		invalidate();
+    	}
     }
     
     public void setDial(int id){
-    	m_DialDraw = mResources.getDrawable(id);
+    	m_DialId = id;
+    	m_DialDraw = null;
+    	m_DialWidth = 0;
+    	requestFace(getWidth(), getHeight());
     }
     
     public void setDial(Drawable drawable){
+    	//the face is no longer described by resource ids alone
+    	m_PooledFace = false;
     	m_DialDraw = drawable;
+    	m_DialWidth = 0;
+    	requestFace(getWidth(), getHeight());
     }
     
     public void setDial(Bitmap bitmap){
-    	m_DialDraw = new BitmapDrawable(bitmap);
+    	setDial(new BitmapDrawable(bitmap));
+    }
+    
+    
+    /**
+     * Replace the face without inflating the clock again. The dial, brand and
+     * hands all come from the atlas of the pack and the layout values of the
+     * pack replace the attributes.
+     * @param pack the face, or null to go back to the drawables of the clock
+     */
+    public void setFace(FacePack pack){
+    	m_Face = pack;
+    	if(pack == null){
+    		m_Atlas = null;
+    		setFaceLayer(null, false);
+    		requestFace(getWidth(), getHeight());
+    	}else{
+    		cancelFace();
+    		m_Atlas = pack.getAtlas();
+    		float density = mResources.getDisplayMetrics().density;
+    		m_BrandMarginTop = (int) (pack.getBrandMarginTop() * density + 0.5f);
+    		m_HourCenterOffset = (int) (pack.getHourCenterOffset() * density + 0.5f);
+    		m_MinuteCenterOffset = (int) (pack.getMinuteCenterOffset() * density + 0.5f);
+    		m_SecondCenterOffset = (int) (pack.getSecondCenterOffset() * density + 0.5f);
+    	}
+    	m_NeedRedraw = true;
+    	invalidate();
+    }
+    
+    private void saveBaseLayout(){
+    	m_BaseBrandMarginTop = m_BrandMarginTop;
+    	m_BaseHourCenterOffset = m_HourCenterOffset;
+    	m_BaseMinuteCenterOffset = m_MinuteCenterOffset;
+    	m_BaseSecondCenterOffset = m_SecondCenterOffset;
+    }
+    
+    /**
+     * Show the time of the given zone instead of the device one.
+     * @param timeZoneId an id as understood by {@link TimeZone#getTimeZone(String)},
+     * or null to follow the device time zone again
+     */
+    public void setTimeZone(String timeZoneId){
+    	m_TimeZoneId = timeZoneId;
+    	if(m_SharedZone){
+    		//the cache of the pool is used by other clocks, take an own one
+    		m_ZoneOffset = new ZoneOffsetCache(resolveTimeZone());
+    		m_SharedZone = false;
+    	}else{
+    		m_ZoneOffset.setTimeZone(resolveTimeZone());
+    	}
+    	onTimeChanged(false);
+    	invalidate();
+    }
+    
+    public String getTimeZone(){
+    	return m_ZoneOffset.getTimeZone().getID();
     }
     
+    /**
+     * Let the hands ease to their new position on every second instead of
+     * snapping, like the tick of a mechanical watch. Frames are only drawn
+     * while the hands move, the clock stays idle for the rest of the second.
+     * @param durationMillis how long the hands move, 0 turns the animation off
+     * @param interpolator the easing, null for a small overshoot
+     */
+    public void setTickAnimation(int durationMillis, Interpolator interpolator){
+    	m_TickDuration = Math.max(0, Math.min(durationMillis, ONESECOND));
+    	m_TickInterpolator = interpolator != null ? interpolator : new OvershootInterpolator(DEFAULT_TICK_TENSION);
+    	if(m_TickDuration == 0){
+    		m_TickAnimating = false;
+    	}
+    }
+    
+    /**
+     * Move the hands continuously like a mechanical movement instead of once
+     * a second. Costs a frame every {@value #TICK_FRAME_DELAY}ms, the tick
+     * animation is not used meanwhile.
+     */
+    public void setSweepMode(boolean sweep){
+    	if(m_SweepMode == sweep){
+    		return;
+    	}
+    	m_SweepMode = sweep;
+    	if(m_IsAttachedToWindow){
+    		onTimeChanged(false);
+    		invalidate();
+    		scheduleTick();
+    	}
+    }
+    
+    public boolean isSweepMode(){
+    	return m_SweepMode;
+    }
+    
+    /**
+     * Draw the second hand of the tick mode from sprites rendered once per
+     * size, a blit instead of a rotated and filtered hand every second. The
+     * clocks showing the same hand at the same size share the sprites. All
+     * sprites share a memory budget, a clock over it and the sweep mode draw
+     * the hand as usual. Mainly for software canvases, a hardware canvas
+     * rotates the hand at hardly any cost.
+     */
+    public void setSecondHandSprites(boolean sprites){
+    	m_SecondSpritesMode = sprites;
+    	if(!sprites){
+    		releaseSprites();
+    	}
+    	m_NeedRedraw = true;
+    	invalidate();
+    }
+    
+    public boolean isSecondHandSprites(){
+    	return m_SecondSpritesMode;
+    }
+    
+    private void releaseSprites(){
+    	if(m_SecondSprites != null){
+    		FacePool.getInstance().releaseSprites(m_SecondSprites);
+    		m_SecondSprites = null;
+    	}
+    	//other clocks may have given theirs back meanwhile
+    	m_SpritesRefusedHand = null;
+    }
+    
+    /**
+     * @return the sprites of the second hand at the scale, null to rotate the hand
+     */
+    private HandSprites getSecondSprites(float scale){
+    	if(!m_SecondSpritesMode || m_TickAnimating || isSweeping() || m_SecondHandDraw == null){
+    		return null;
+    	}
+    	if(m_SecondSprites != null && !m_SecondSprites.matches(m_SecondHandDraw, scale)){
+    		releaseSprites();
+    	}
+    	if(m_SecondSprites == null && (m_SpritesRefusedHand != m_SecondHandDraw || m_SpritesRefusedScale != scale)){
+    		m_SecondSprites = FacePool.getInstance().acquireSprites(m_SecondHandDraw, scale);
+    		if(m_SecondSprites == null){
+    			m_SpritesRefusedHand = m_SecondHandDraw;
+    			m_SpritesRefusedScale = scale;
+    			if(DEBUG){
+    				debug("second hand sprites over the budget, the hand is rotated");
+    			}
+    		}
+    	}
+    	return m_SecondSprites;
+    }
+    
+    /**
+     * Show a digital readout and the date on top of the dial. The digits
+     * come from a glyph strip rendered once per size and font, a tick only
+     * copies the digits which changed.
+     * @param time show the time as HH:MM
+     * @param seconds add the seconds to the time
+     * @param date show the weekday and date below the time
+     */
+    public void setDigitalOverlay(boolean time, boolean seconds, boolean date){
+    	if(m_Digital == null){
+    		if(!time && !date){
+    			return;
+    		}
+    		m_Digital = new DigitalOverlay(mContext);
+    		m_Digital.setColor(DEFAULT_DIGITAL_COLOR);
+    		m_Digital.set24Hour(DateFormat.is24HourFormat(mContext));
+    	}
+    	m_Digital.setContent(time, seconds, date);
+    	onDigitalChanged();
+    }
+    
+    /**
+     * @param textSize of the digits in px, 0 to follow the size of the clock
+     */
+    public void setDigitalTextSize(float textSize){
+    	if(m_Digital != null){
+    		m_Digital.setTextSize(textSize);
+    		onDigitalChanged();
+    	}
+    }
+    
+    public void setDigitalTextColor(int color){
+    	if(m_Digital != null){
+    		m_Digital.setColor(color);
+    		onDigitalChanged();
+    	}
+    }
+    
+    public void setDigitalTypeface(Typeface typeface){
+    	if(m_Digital != null){
+    		m_Digital.setTypeface(typeface);
+    		onDigitalChanged();
+    	}
+    }
+    
+    private void onDigitalChanged(){
+    	m_Digital.setSize(getWidth(), getHeight());
+    	updateDigital(System.currentTimeMillis());
+    	m_NeedRedraw = true;
+    	invalidate();
+    }
+    
+    private void updateDigital(long now){
+    	m_Digital.update(now + m_ZoneOffset.getOffset(now), now, m_ZoneOffset.getTimeZone().getID());
+    }
+    
+    /**
+     * Show the stopwatch sub-dials, a 30 minute register and a hand for the
+     * tenths of a second. Turning it off stops and resets the stopwatch.
+     * @return false if zone dials take the places at 9 and 3 o'clock, see
+     * {@link #addZoneDial(String)}
+     */
+    public boolean setChronographMode(boolean chronograph){
+    	if(chronograph == (m_Chronograph != null)){
+    		return true;
+    	}
+    	if(m_ZoneDials != null && !m_ZoneDials.setChronograph(chronograph)){
+    		return false;
+    	}
+    	if(chronograph){
+    		m_Chronograph = new Chronograph();
+    		m_Chronograph.setSize(getWidth(), getHeight());
+    		m_ChronographView = new ChronographView(mContext, m_Chronograph);
+    		addView(m_ChronographView);
+    	}else{
+    		mHandler.removeMessages(MSG_CHRONOGRAPH_FRAME);
+    		removeView(m_ChronographView);
+    		m_ChronographView = null;
+    		m_Chronograph.release();
+    		m_Chronograph = null;
+    	}
+    	m_NeedRedraw = true;
+    	invalidate();
+    	return true;
+    }
+    
+    /**
+     * @param framesPerSecond how often the tenths hand is drawn while running, 1 to 60
+     */
+    public void setChronographFrameRate(int framesPerSecond){
+    	m_ChronographFrameDelay = ONESECOND / Math.max(1, Math.min(60, framesPerSecond));
+    }
+    
+    public void startChronograph(){
+    	if(m_Chronograph == null || m_Chronograph.isRunning()){
+    		return;
+    	}
+    	m_Chronograph.start();
+    	if(m_IsAttachedToWindow && !m_WindowHidden){
+    		mHandler.removeMessages(MSG_CHRONOGRAPH_FRAME);
+    		mHandler.sendEmptyMessage(MSG_CHRONOGRAPH_FRAME);
+    	}
+    }
+    
+    public void stopChronograph(){
+    	if(m_Chronograph == null || !m_Chronograph.isRunning()){
+    		return;
+    	}
+    	m_Chronograph.stop();
+    	mHandler.removeMessages(MSG_CHRONOGRAPH_FRAME);
+    	invalidateChronograph();
+    }
+    
+    public void resetChronograph(){
+    	if(m_Chronograph != null){
+    		m_Chronograph.reset();
+    		invalidateChronograph();
+    	}
+    }
+    
+    public boolean isChronographRunning(){
+    	return m_Chronograph != null && m_Chronograph.isRunning();
+    }
+    
+    /**
+     * @return the time measured by the stopwatch in milliseconds
+     */
+    public long getChronographElapsed(){
+    	return m_Chronograph == null ? 0 : m_Chronograph.getElapsedNanos() / 1000000L;
+    }
+    
+    /**
+     * Show a hand turning once a day, for the time of a second zone on a
+     * 24 hour scale. It moves with the hands of the clock, from the same
+     * time read and a cached offset of the zone.
+     * @param zoneId the zone of the hand, null for the device time zone
+     */
+    public void showGmtHand(String zoneId){
+    	getZoneDials().setGmtHand(zoneId, TimeEventHub.getInstance(mContext).getTimeZone());
+    	onZoneDialsChanged();
+    }
+    
+    public void hideGmtHand(){
+    	if(m_ZoneDials != null){
+    		m_ZoneDials.hideGmtHand();
+    		onZoneDialsChanged();
+    	}
+    }
+    
+    /**
+     * Add a sub-dial with the hours and minutes of another zone, at 6, 9 and
+     * 3 o'clock in that order. The latter two are the places of the
+     * chronograph, while it is shown only the one at 6 o'clock is free.
+     * @param zoneId the zone of the sub-dial, null for the device time zone
+     * @return false if all free places are taken
+     */
+    public boolean addZoneDial(String zoneId){
+    	if(!getZoneDials().addZone(zoneId, TimeEventHub.getInstance(mContext).getTimeZone())){
+    		return false;
+    	}
+    	onZoneDialsChanged();
+    	return true;
+    }
+    
+    public void clearZoneDials(){
+    	if(m_ZoneDials != null){
+    		m_ZoneDials.clearZones();
+    		onZoneDialsChanged();
+    	}
+    }
+    
+    public void setZoneDialColors(int faceColor, int gmtColor){
+    	getZoneDials().setColors(faceColor, gmtColor);
+    	onZoneDialsChanged();
+    }
+    
+    private ZoneDials getZoneDials(){
+    	if(m_ZoneDials == null){
+    		m_ZoneDials = new ZoneDials();
+    		m_ZoneDials.setChronograph(m_Chronograph != null);
+    		m_ZoneDials.setSize(getWidth(), getHeight());
+    	}
+    	return m_ZoneDials;
+    }
+    
+    private void onZoneDialsChanged(){
+    	m_ZoneDials.update(System.currentTimeMillis());
+    	m_NeedRedraw = true;
+    	invalidate();
+    }
+    
+    /**
+     * Mark the given time on the dial, the listener is told once it is reached.
+     * @param timeMillis wall time since the epoch, 0 removes the marker
+     */
+    public void setAlarmMarker(long timeMillis){
+    	if(m_Markers == null){
+    		if(timeMillis == 0){
+    			return;
+    		}
+    		m_Markers = new MarkerLayer();
+    		m_Markers.setSize(getWidth(), getHeight());
+    	}
+    	m_Markers.setAlarm(timeMillis);
+    	onMarkersChanged();
+    }
+    
+    public long getAlarmMarker(){
+    	return m_Markers == null ? 0 : m_Markers.getAlarm();
+    }
+    
+    /**
+     * Show an arc along the bezel from the minute hand to the end of the
+     * countdown, shrinking as the time runs out. The countdown is measured
+     * on the monotonic clock, changing the wall time does not shift its end.
+     */
+    public void startCountdown(long durationMillis){
+    	if(m_Markers == null){
+    		m_Markers = new MarkerLayer();
+    		m_Markers.setSize(getWidth(), getHeight());
+    	}
+    	m_Markers.startCountdown(Math.max(0, durationMillis));
+    	onMarkersChanged();
+    }
+    
+    public void cancelCountdown(){
+    	if(m_Markers != null){
+    		m_Markers.cancelCountdown();
+    		onMarkersChanged();
+    	}
+    }
+    
+    /**
+     * @return the milliseconds left of the countdown, 0 if none runs
+     */
+    public long getCountdownRemaining(){
+    	return m_Markers == null ? 0 : m_Markers.getCountdownRemaining();
+    }
+    
+    public void setOnMarkerListener(OnMarkerListener listener){
+    	m_OnMarkerListener = listener;
+    }
+    
+    private void onMarkersChanged(){
+    	m_Markers.update(System.currentTimeMillis(), m_ZoneOffset);
+    	scheduleMarkers();
+    	m_NeedRedraw = true;
+    	invalidate();
+    }
+    
+    /**
+     * Queue one message for the marker due next. It is queued again on every
+     * time broadcast, so a deep sleep or a change of the wall time delays it
+     * by at most a minute.
+     */
+    private void scheduleMarkers(){
+    	mHandler.removeMessages(MSG_MARKER_DUE);
+    	if(m_Markers == null || !m_IsAttachedToWindow){
+    		return;
+    	}
+    	long delay = m_Markers.getNextDelay(System.currentTimeMillis());
+    	if(delay >= 0){
+    		mHandler.sendEmptyMessageDelayed(MSG_MARKER_DUE, delay);
+    	}
+    }
+    
+    private void onMarkersDue(){
+    	long now = System.currentTimeMillis();
+    	long alarm = m_Markers.getAlarm();
+    	int due = m_Markers.takeDue(now);
+    	if(due != 0){
+    		m_Markers.update(now, m_ZoneOffset);
+    		m_NeedRedraw = true;
+    		invalidate();
+    	}
+    	scheduleMarkers();
+    	if(m_OnMarkerListener != null){
+    		if((due & MarkerLayer.DUE_ALARM) != 0){
+    			m_OnMarkerListener.onAlarm(this, alarm);
+    		}
+    		if((due & MarkerLayer.DUE_COUNTDOWN) != 0){
+    			m_OnMarkerListener.onCountdownFinished(this);
+    		}
+    	}
+    }
+    
+    /**
+     * Redraw the chronograph view alone, the face and hands of the clock keep
+     * their display list.
+     */
+    private void invalidateChronograph(){
+    	m_ChronographView.invalidateHands();
+    }
+    
+    /**
+     * Show another face and zone, for a clock recycled by a list adapter.
+     * The composed face layers, the hands and the zone offsets are shared
+     * with the other bound clocks through a pool, so binding a face and
+     * zone seen before decodes and allocates nothing. The layers are shown
+     * or hidden as the config has them, the alarm marker, the countdown and
+     * the stopwatch of the previous item are cleared.
+     * @param zoneId the time zone of the item, null for the device time zone
+     */
+    public void bind(FaceConfig config, String zoneId){
+    	cancelFace();
+    	setFaceLayer(null, false);
+    	m_PooledFace = true;
+    	m_Face = null;
+    	m_Atlas = null;
+    	final FacePool pool = FacePool.getInstance();
+    	
+    	m_DialId = config.dialId;
+    	m_HideDial = m_DialId == 0;
+    	m_DialDraw = null;
+    	m_DialWidth = 0;
+    	m_BrandId = config.brandId;
+    	m_HideBrand = m_BrandId == 0;
+    	m_BrandDraw = null;
+    	m_BrandMarginTop = config.brandMarginTop;
+    	m_HourCenterOffset = config.hourCenterOffset;
+    	m_MinuteCenterOffset = config.minuteCenterOffset;
+    	m_SecondCenterOffset = config.secondCenterOffset;
+    	saveBaseLayout();
+    	m_HourHandId = config.hourHandId;
+    	m_HideHourHand = m_HourHandId == 0;
+    	m_HourHandDraw = pool.getDrawable(mResources, m_HourHandId);
+    	m_MinuteHandId = config.minuteHandId;
+    	m_HideMinuteHand = m_MinuteHandId == 0;
+    	m_MinuteHandDraw = pool.getDrawable(mResources, m_MinuteHandId);
+    	m_SecondHandId = config.secondHandId;
+    	m_HideSecondHand = m_SecondHandId == 0;
+    	m_SecondHandDraw = pool.getDrawable(mResources, m_SecondHandId);
+    	
+    	m_TimeZoneId = zoneId;
+    	m_ZoneOffset = pool.getZoneOffset(zoneId, TimeEventHub.getInstance(mContext).getTimeZone());
+    	m_SharedZone = true;
+    	
+    	//nothing of the previous item may show
+    	m_TickAnimating = false;
+    	mHandler.removeMessages(MSG_TICK_FRAME);
+    	if(m_Markers != null){
+    		m_Markers.setAlarm(0);
+    		m_Markers.cancelCountdown();
+    		mHandler.removeMessages(MSG_MARKER_DUE);
+    	}
+    	if(m_Chronograph != null){
+    		m_Chronograph.stop();
+    		m_Chronograph.reset();
+    		mHandler.removeMessages(MSG_CHRONOGRAPH_FRAME);
+    		m_ChronographView.invalidate();
+    	}
+    	
+    	requestFace(getWidth(), getHeight());
+    	onTimeChanged(false);
+    	m_NeedRedraw = true;
+    	invalidate();
+    	scheduleTick();
+    }
+    
+    /**
+     * Stop all work of a clock whose list item went away and give its face
+     * layer back to the pool, the next {@link #bind(FaceConfig, String)}
+     * starts it again.
+     */
+    public void unbind(){
+    	stopFrames();
+    	mHandler.removeMessages(MSG_MARKER_DUE);
+    	cancelFace();
+    	setFaceLayer(null, false);
+    }
+    
+    /**
+     * Take the face as it is now, to render it at any time and size into a
+     * bitmap, e.g. for a notification, on any one thread. The layer of the
+     * clock is drawn as is when its size is asked for, other sizes are
+     * composed by the snapshot. Only the dial, brand and hands are rendered,
+     * in the zone of the clock. Main thread only.
+     */
+    public ClockSnapshot snapshot(){
+    	FaceCompositor.FaceRequest request = new FaceCompositor.FaceRequest();
+    	request.resources = mResources;
+    	//own instances, the clock keeps drawing and sizing its drawables
+    	request.dial = FaceCompositor.copyOf(mResources, m_DialDraw);
+    	request.dialId = m_DialId;
+    	request.brand = FaceCompositor.copyOf(mResources, m_BrandDraw);
+    	request.brandId = m_BrandId;
+    	request.brandMarginTop = m_BrandMarginTop;
+    	request.hideDial = m_HideDial;
+    	request.hideBrand = m_HideBrand;
+    	request.hourHand = FaceCompositor.copyOf(mResources, m_HourHandDraw);
+    	request.minuteHand = FaceCompositor.copyOf(mResources, m_MinuteHandDraw);
+    	request.secondHand = FaceCompositor.copyOf(mResources, m_SecondHandDraw);
+    	request.hideHourHand = m_HideHourHand;
+    	request.hideMinuteHand = m_HideMinuteHand;
+    	request.hideSecondHand = m_HideSecondHand;
+    	int[] handIds = { m_HourHandId, m_MinuteHandId, m_SecondHandId };
+    	return new ClockSnapshot(mResources, request, m_FaceLayer, m_ClockWidth, m_ClockHeight,
+    			m_Face != null ? m_Face.getAtlas() : null, handIds, m_ZoneOffset.getTimeZone(), m_SweepMode);
+    }
+    
+    /**
+     * Render the face once at any time and size, see {@link #snapshot()} to
+     * render it repeatedly or off the main thread. Main thread only.
+     * @param reuse drawn into if it is mutable and of the size, may be null
+     * @return reuse, or a new bitmap if it did not fit
+     */
+    public Bitmap renderToBitmap(int width, int height, long timeMillis, Bitmap reuse){
+    	ClockSnapshot snapshot = snapshot();
+    	try{
+    		return snapshot.renderToBitmap(width, height, timeMillis, reuse);
+    	}finally{
+    		snapshot.release();
+    	}
+    }
+    
+    static void setEagerDecode(boolean eager){
+    	sEagerDecode = eager;
+    }
+    
+    /**
+     * Wait for the face composing in the background and show it right away
+     * instead of through the handler, for a benchmark holding the main thread.
+     * @return false if it did not finish in time
+     */
+    boolean awaitFace(long timeoutMillis){
+    	if(m_FacePending == null){
+    		return true;
+    	}
+    	FaceCompositor.FaceLayer layer;
+    	try{
+    		layer = m_FacePending.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    	}catch(InterruptedException e){
+    		Thread.currentThread().interrupt();
+    		return false;
+    	}catch(ExecutionException e){
+    		return false;
+    	}catch(TimeoutException e){
+    		return false;
+    	}
+    	//the message already queued is ignored through the generation
+    	m_FaceGeneration++;
+    	m_FacePending = null;
+    	if(layer != null){
+    		onFaceReady(layer);
+    	}
+    	return true;
+    }
+    
+    /**
+     * Drop the face work and give the layer back to the pool, as when
+     * detached. For a benchmark, whose clocks are never attached.
+     */
+    void releaseFace(){
+    	cancelFace();
+    	setFaceLayer(null, false);
+    }
     
     //--------------------------------------------------------
     public void hideHourHand(boolean hide){
     	m_HideHourHand = hide;
+    	onHandChanged();
     }
     
     public void hideMinuteHand(boolean hide){
     	m_HideMinuteHand = hide;
+    	onHandChanged();
     }
     
     public void hideSecondHand(boolean hide){
     	m_HideSecondHand = hide;
+    	onHandChanged();
     }
     
     public void hideDial(boolean hide){
     	m_HideDial = hide;
+    	requestFace(getWidth(), getHeight());
     }
     
     public void hideBrand(boolean hide){
     	m_HideBrand = hide;
+    	requestFace(getWidth(), getHeight());
     }
     
     //--------------------------------------------------------
@@ -233,42 +1043,120 @@ public class RealAnalogClock3 extends View {
 
         if (!m_IsAttachedToWindow) {
             m_IsAttachedToWindow = true;
-            IntentFilter filter = new IntentFilter();
-
-            filter.addAction(Intent.ACTION_TIME_TICK);
-            filter.addAction(Intent.ACTION_TIME_CHANGED);
-            filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
-
-            getContext().registerReceiver(mIntentReceiver, filter);
+            TimeEventHub.getInstance(getContext()).subscribe(mTimeListener);
         }
+        m_TickLevel = TimeEventHub.getInstance(getContext()).getTickLevel();
 
-		send();
+        TimeEventHub.getInstance(getContext()).notifyClockAttached(this);
 		
-        // NOTE: It's safe to do these after registering the receiver since the receiver always runs
-        // in the main thread, therefore the receiver can't run before this method returns.
+        // NOTE: It's safe to do these after subscribing since the hub always dispatches
+        // in the main thread, therefore the listener can't run before this method returns.
 
-        // The time zone may have changed while the receiver wasn't registered, so update the Time
-        m_CurrentTime = new Time();
+        // The time zone may have changed while the receiver wasn't registered, so update the zone
+        if(m_TimeZoneId == null){
+        	TimeZone timeZone = TimeEventHub.getInstance(getContext()).getTimeZone();
+        	if(m_ZoneOffset.getTimeZone() != timeZone){
+        		m_ZoneOffset.setTimeZone(timeZone);
+        	}
+        }
+        if(m_Digital != null){
+        	m_Digital.set24Hour(DateFormat.is24HourFormat(mContext));
+        }
 
+        if(m_FaceLayer == null && m_FacePending == null){
+        	requestFace(getWidth(), getHeight());
+        }
+        
         // Make sure we update to the current time
-        onTimeChanged();
-        mHandler.sendEmptyMessageDelayed(MSG_ONESECOND, ONESECOND);
+        onTimeChanged(false);
+        startFrames();
+        //markers which came due while detached fire right away
+        scheduleMarkers();
     }
-	
-	private static final String ACTION_ATTACH_CONTAINER = "com.sherchen.clockui.attach_container";
-
-    private void send(){
-        Intent intent = new Intent(ACTION_ATTACH_CONTAINER);
-        getContext().sendBroadcast(intent);
+    
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        boolean hidden = visibility != VISIBLE;
+        if(hidden == m_WindowHidden){
+        	return;
+        }
+        m_WindowHidden = hidden;
+        if(!m_IsAttachedToWindow){
+        	return;
+        }
+        if(hidden){
+        	stopFrames();
+        }else{
+        	onTimeChanged(false);
+        	invalidate();
+        	startFrames();
+        }
+    }
+    
+    /**
+     * Queue the tick and the stopwatch frames, the markers are queued on their own.
+     */
+    private void startFrames(){
+    	scheduleTick();
+    	if(isChronographRunning() && m_IsAttachedToWindow && !m_WindowHidden){
+    		mHandler.removeMessages(MSG_CHRONOGRAPH_FRAME);
+    		mHandler.sendEmptyMessage(MSG_CHRONOGRAPH_FRAME);
+    	}
+    }
+    
+    /**
+     * Drop every queued frame, a detached or hidden clock must not keep its
+     * handler looping. The stopwatch keeps counting, only its frames stop.
+     */
+    private void stopFrames(){
+    	mHandler.removeMessages(MSG_ONESECOND);
+    	mHandler.removeMessages(MSG_SWEEP_FRAME);
+    	mHandler.removeMessages(MSG_TICK_FRAME);
+    	mHandler.removeMessages(MSG_CHRONOGRAPH_FRAME);
+    	m_TickAnimating = false;
+    }
+    
+    private void scheduleTick(){
+    	mHandler.removeMessages(MSG_ONESECOND);
+    	mHandler.removeMessages(MSG_SWEEP_FRAME);
+    	if(!m_IsAttachedToWindow || m_WindowHidden){
+    		return;
+    	}
+    	if(isSweeping()){
+    		mHandler.sendEmptyMessageDelayed(MSG_SWEEP_FRAME, TICK_FRAME_DELAY);
+    	}else if(m_TickLevel >= PowerGovernor.LEVEL_TICK){
+    		mHandler.sendEmptyMessageDelayed(MSG_ONESECOND, ONESECOND);
+    	}
+    	//else the TIME_TICK of the hub moves the hands once a minute
+    }
+    
+    /**
+     * @return true if the sweep mode is on and the PowerGovernor allows it
+     */
+    private boolean isSweeping(){
+    	return m_SweepMode && m_TickLevel >= PowerGovernor.LEVEL_SWEEP;
+    }
+    
+    private boolean isSecondHandShown(){
+    	return !m_HideSecondHand && m_TickLevel >= PowerGovernor.LEVEL_TICK;
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         if (m_IsAttachedToWindow) {
-            getContext().unregisterReceiver(mIntentReceiver);
+            TimeEventHub.getInstance(getContext()).unsubscribe(mTimeListener);
             m_IsAttachedToWindow = false;
         }
+        cancelFace();
+        stopFrames();
+        mHandler.removeMessages(MSG_MARKER_DUE);
+        releaseSprites();
+        //off screen in a list, let other clocks have the layer meanwhile
+        if(m_FacePooled){
+        	setFaceLayer(null, false);
+        }
     }
 
     @Override
@@ -285,7 +1173,13 @@ public class RealAnalogClock3 extends View {
         m_ClockOffset =( widthSize - heightSize)/2;
         
         
-        Log.d(TAG, "w:"+widthSize+" h:"+heightSize);
+        if(DEBUG){
+        	debug("w:"+widthSize+" h:"+heightSize);
+        }
+        if(m_ChronographView != null){
+        	m_ChronographView.measure(MeasureSpec.makeMeasureSpec(widthSize, MeasureSpec.EXACTLY),
+        			MeasureSpec.makeMeasureSpec(heightSize, MeasureSpec.EXACTLY));
+        }
 //        float hScale = 1.0f;
 //        float vScale = 1.0f;
 //
@@ -304,20 +1198,204 @@ public class RealAnalogClock3 extends View {
                 resolveSizeAndState((int) (mDialHeight * scale), heightMeasureSpec, 0));*/
     }
 
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+    	if(m_ChronographView != null){
+    		//over the whole clock, the sub-dials are placed by the chronograph
+    		m_ChronographView.layout(0, 0, right - left, bottom - top);
+    	}
+    }
+
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
+        //the old layer has the wrong size, draw the placeholder until the new one is ready
+        setFaceLayer(null, false);
+        if(m_Face == null){
+        	m_Atlas = null;
+        }
+        //first layout, the hands are needed from now on
+        loadHands();
+        requestFace(w, h);
+        if(m_Digital != null){
+        	m_Digital.setSize(w, h);
+        	updateDigital(System.currentTimeMillis());
+        }
+        if(m_Chronograph != null){
+        	m_Chronograph.setSize(w, h);
+        }
+        if(m_ZoneDials != null){
+        	m_ZoneDials.setSize(w, h);
+        }
+        if(m_Markers != null){
+        	m_Markers.setSize(w, h);
+        	m_Markers.update(System.currentTimeMillis(), m_ZoneOffset);
+        }
         m_NeedRedraw = true;
     }
+    
+    /**
+     * Start composing the dial and brand for the given size in the background,
+     * any work still running for an older size or face is dropped.
+     */
+    private void requestFace(int width, int height){
+    	cancelFace();
+    	m_InterimLayer = null;
+    	if(width <= 0 || height <= 0 || m_Face != null){
+    		return;
+    	}
+    	final boolean pooled = isPooled();
+    	if(pooled){
+    		final FacePool pool = FacePool.getInstance();
+    		fillPoolKey(width, height);
+    		FaceCompositor.FaceLayer layer = pool.acquire(m_PoolKey);
+    		if(layer != null){
+    			setFaceLayer(layer, true);
+    			m_NeedRedraw = true;
+    			invalidate();
+    			return;
+    		}
+    		m_InterimLayer = pool.findOtherSize(m_PoolKey);
+    		//decoded by an earlier clock, only the composing is left
+    		if(m_DialDraw == null){
+    			m_DialDraw = pool.peekDrawable(mResources, m_DialId);
+    		}
+    		if(m_BrandDraw == null){
+    			m_BrandDraw = pool.peekDrawable(mResources, m_BrandId);
+    		}
+    	}
+    	FaceCompositor.FaceRequest request = new FaceCompositor.FaceRequest();
+    	request.resources = mResources;
+    	request.dial = m_DialDraw;
+    	request.dialId = m_DialId;
+    	request.brand = m_BrandDraw;
+    	request.brandId = m_BrandId;
+    	request.brandMarginTop = m_BrandMarginTop;
+    	request.hideDial = m_HideDial;
+    	request.hideBrand = m_HideBrand;
+    	request.width = width;
+    	request.height = height;
+    	request.atlas = m_AtlasMode;
+    	request.hourHand = m_HourHandDraw;
+    	request.minuteHand = m_MinuteHandDraw;
+    	request.secondHand = m_SecondHandDraw;
+    	request.hideHourHand = m_HideHourHand;
+    	request.hideMinuteHand = m_HideMinuteHand;
+    	request.hideSecondHand = m_HideSecondHand;
+    	m_FacePending = FaceCompositor.compose(request, mHandler, MSG_FACE_READY, m_FaceGeneration);
+    }
+    
+    /**
+     * @return true if the layer of this clock can be shared through the FacePool
+     */
+    private boolean isPooled(){
+    	return m_PooledFace && !m_AtlasMode && m_Face == null;
+    }
+    
+    private void fillPoolKey(int width, int height){
+    	final FacePool.Key key = m_PoolKey;
+    	key.dialId = m_DialId;
+    	key.brandId = m_BrandId;
+    	key.brandMarginTop = m_BrandMarginTop;
+    	key.hideDial = m_HideDial;
+    	key.hideBrand = m_HideBrand;
+    	key.width = width;
+    	key.height = height;
+    	key.density = mResources.getDisplayMetrics().densityDpi;
+    }
+    
+    private void setFaceLayer(FaceCompositor.FaceLayer layer, boolean pooled){
+    	if(m_FacePooled && m_FaceLayer != null){
+    		FacePool.getInstance().release(m_FaceLayer);
+    	}
+    	m_FaceLayer = layer;
+    	m_FacePooled = pooled;
+    	if(layer != null){
+    		m_InterimLayer = null;
+    	}
+    }
+    
+    private void cancelFace(){
+    	if(m_FacePending != null){
+    		m_FacePending.cancel(true);
+    		m_FacePending = null;
+    	}
+    	//a result already queued on the handler is ignored through the generation
+    	m_FaceGeneration++;
+    }
+    
+    /**
+     * Decode the visible hands which are not loaded yet.
+     */
+    private void loadHands(){
+    	if(m_HourHandDraw == null && !m_HideHourHand && m_HourHandId != 0){
+    		m_HourHandDraw = loadDrawable(m_HourHandId);
+    	}
+    	if(m_MinuteHandDraw == null && !m_HideMinuteHand && m_MinuteHandId != 0){
+    		m_MinuteHandDraw = loadDrawable(m_MinuteHandId);
+    	}
+    	if(m_SecondHandDraw == null && !m_HideSecondHand && m_SecondHandId != 0){
+    		m_SecondHandDraw = loadDrawable(m_SecondHandId);
+    	}
+    }
+    
+    private Drawable loadDrawable(int id){
+    	//the clocks only set bounds right before drawing, one instance serves them all
+    	return m_PooledFace ? FacePool.getInstance().getDrawable(mResources, id) : mResources.getDrawable(id);
+    }
+    
+    private void onFaceReady(FaceCompositor.FaceLayer layer){
+    	m_FacePending = null;
+    	if(isPooled() && layer.bitmap != null){
+    		fillPoolKey(layer.bitmap.getWidth(), layer.bitmap.getHeight());
+    		//another clock may have put one meanwhile, then that one is shown
+    		setFaceLayer(FacePool.getInstance().put(m_PoolKey, layer), true);
+    	}else{
+    		setFaceLayer(layer, false);
+    	}
+    	//keep the decoded drawables, the next size only has to compose them
+    	m_DialDraw = layer.dial;
+    	m_BrandDraw = layer.brand;
+    	if(m_PooledFace){
+    		FacePool.getInstance().keepDrawable(mResources, m_DialId, layer.dial);
+    		FacePool.getInstance().keepDrawable(mResources, m_BrandId, layer.brand);
+    	}
+    	if(layer.atlas != null){
+    		m_Atlas = layer.atlas;
+    	}
+    	m_NeedRedraw = true;
+    	invalidate();
+    }
+    
+    /**
+     * @return the scale of the hands while the face layer is not ready
+     */
+    private float getPlaceholderScale(){
+    	if(m_DialWidth <= 0){
+    		int[] size = new int[2];
+    		if(m_DialDraw != null){
+    			size[0] = m_DialDraw.getIntrinsicWidth();
+    			size[1] = m_DialDraw.getIntrinsicHeight();
+    		}else if(m_DialId == 0 || !FaceCompositor.measureResource(mResources, m_DialId, size)){
+    			return 1.0f;
+    		}
+    		m_DialWidth = size[0];
+    		m_DialHeight = size[1];
+    	}
+    	return Math.min((float) m_ClockWidth / m_DialWidth, (float) m_ClockHeight / m_DialHeight);
+    }
 
     @Override
     protected void onDraw(Canvas canvas) {
 //        super.onDraw(canvas);
 
-        boolean changed = m_NeedRedraw;
+        //a software canvas, and releases before Jelly Bean, draw the clock again
+        //with its chronograph view, then it has to be complete
+        boolean changed = m_NeedRedraw || m_ChronographView != null;
         if (changed) {
             m_NeedRedraw = false;
         }
+        m_DrawHands = changed;
 
         int centerX = m_ClockWidth / 2;
         int centerY = m_ClockHeight / 2;
@@ -328,101 +1406,241 @@ public class RealAnalogClock3 extends View {
 //        	canvas.translate(0, - m_ClockOffset);
 //        }
         
-        //---------------draw dial--------------------------------
-        final Drawable dial = m_DialDraw;
-        int w = dial.getIntrinsicWidth();//116
-        int h = dial.getIntrinsicHeight();
-//        float scale = Math.min((float) m_ClockWidth / (float) w, (float) m_ClockHeight / (float) h);
-        float xScale = (float) m_ClockWidth / w;
-        float yScale = (float) m_ClockHeight / h;
-        float scale = Math.min(xScale, yScale);
-        if(!m_HideDial && changed){//resize the dial to fit the clock sizes
-        	canvas.save();
-			w *= xScale;
-			h *= yScale;
-			dial.setBounds(0, 0, w, h);
-			dial.draw(canvas);
-			canvas.restore();
+        if(m_Atlas != null){
+        	if(changed){
+        		m_HandScale = drawAtlas(canvas, centerX);
+        	}
+        	return;
         }
         
-        if(!m_HideBrand && changed){
-        	canvas.save();
-        	drawBrand(canvas, centerX, centerY, scale);
-        	canvas.restore();
+        //---------------draw dial and brand--------------------------------
+        final FaceCompositor.FaceLayer face = m_FaceLayer;
+        if(face != null){
+        	m_HandScale = face.scale;
+        	if(changed){
+        		canvas.drawBitmap(face.bitmap, 0, 0, null);
+        	}
+        }else{
+        	m_HandScale = getPlaceholderScale();
+        	if(m_InterimLayer != null && changed){
+        		//the dial fills the layer, stretching it gives about the new face
+        		m_AtlasDst.set(0, 0, getWidth(), getHeight());
+        		canvas.drawBitmap(m_InterimLayer.bitmap, null, m_AtlasDst, m_AtlasPaint);
+        	}else if(!m_HideDial && changed){
+        		canvas.drawCircle(centerX, centerY, Math.min(centerX, centerY), m_PlaceholderPaint);
+        	}
+        }
+        if(m_Markers != null && changed){
+        	m_Markers.draw(canvas);
+        }
+        if(m_Digital != null && changed){
+        	m_Digital.draw(canvas);
+        }
+        if(m_ZoneDials != null && changed){
+        	m_ZoneDials.draw(canvas);
+        }
+    }
+    
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+    	//the chronograph view, under the hands
+    	super.dispatchDraw(canvas);
+    	if(!m_DrawHands){
+    		return;
+    	}
+    	m_DrawHands = false;
+    	
+    	int centerX = m_ClockWidth / 2;
+    	int centerY = m_ClockHeight / 2;
+    	float scale = m_HandScale;
+        float hourDegrees = ClockHands.hourDegrees(m_CurrentHour);
+        float minuteDegrees = ClockHands.minuteDegrees(m_CurrentMinutes);
+        float secondDegrees = ClockHands.secondDegrees(m_CurrentSeconds);
+        if(m_TickAnimating){
+        	float progress = getTickProgress();
+        	hourDegrees = ease(m_FromHourDegrees, hourDegrees, progress);
+        	minuteDegrees = ease(m_FromMinuteDegrees, minuteDegrees, progress);
+        	secondDegrees = ease(m_FromSecondDegrees, secondDegrees, progress);
+        }
+        
+        if(m_Atlas != null){
+        	drawAtlasHands(canvas, centerX, centerY, scale, hourDegrees, minuteDegrees, secondDegrees);
+        	return;
         }
         
         //---------------draw hour hand--------------------------------
-        if(!m_HideHourHand && changed){
-			canvas.save();
-			//rotate the hour hand at the center of x,y
-			canvas.rotate(m_CurrentHour / 12.0f * 360.0f, centerX, centerY);
-			final Drawable hourHand = m_HourHandDraw;
-			draw(canvas, centerX, centerY, scale, hourHand);
-			canvas.restore();
+        if(!m_HideHourHand){
+			ClockHands.draw(canvas, centerX, centerY, scale, hourDegrees, m_HourHandDraw);
 		}
         //---------------draw minute hand--------------------------------
-		if (!m_HideMinuteHand && changed) {
-			canvas.save();
-			canvas.rotate(m_CurrentMinutes / 60.0f * 360.0f, centerX, centerY);
-			final Drawable minuteHand = m_MinuteHandDraw;
-			draw(canvas, centerX, centerY, scale, minuteHand);
-			canvas.restore();
+		if (!m_HideMinuteHand) {
+			ClockHands.draw(canvas, centerX, centerY, scale, minuteDegrees, m_MinuteHandDraw);
 		}
         //---------------draw second hand --------------------------------
-		if (!m_HideSecondHand && changed) {
-			canvas.save();
-			canvas.rotate(m_CurrentSeconds / 60.0f * 360.0f, centerX, centerY);
-			final Drawable secondHand = m_SecondHandDraw;
-			draw(canvas, centerX, centerY, scale, secondHand);
-			canvas.restore();
+		if (isSecondHandShown()) {
+			//sprites only at the scale of the composed face, not for the placeholder
+			HandSprites sprites = m_FaceLayer != null ? getSecondSprites(scale) : null;
+			if(sprites != null){
+				sprites.draw(canvas, centerX, centerY, (int) m_CurrentSeconds, null);
+			}else{
+				ClockHands.draw(canvas, centerX, centerY, scale, secondDegrees, m_SecondHandDraw);
+			}
 		}
     }
+    
+    /**
+     * Draw the layers under the hands from the one atlas bitmap of the face.
+     * @return the scale of the hands
+     */
+    private float drawAtlas(Canvas canvas, int centerX){
+    	final FaceAtlas atlas = m_Atlas;
+    	final Rect dst = m_AtlasDst;
+    	float scale = 1.0f;
+    	Rect dial = atlas.getSprite(FaceAtlas.SPRITE_DIAL);
+    	if(atlas.prescaled){
+    		//sprites have their final size already
+    		if(dial != null && !m_HideDial){
+    			dst.set(0, 0, dial.width(), dial.height());
+    			canvas.drawBitmap(atlas.bitmap, dial, dst, m_AtlasPaint);
+    		}
+    	}else if(dial != null){
+    		float xScale = (float) m_ClockWidth / dial.width();
+    		float yScale = (float) m_ClockHeight / dial.height();
+    		scale = Math.min(xScale, yScale);
+    		if(!m_HideDial){//resize the dial to fit the clock sizes
+    			dst.set(0, 0, (int) (dial.width() * xScale), (int) (dial.height() * yScale));
+    			canvas.drawBitmap(atlas.bitmap, dial, dst, m_AtlasPaint);
+    		}
+    	}
+    	Rect brand = atlas.getSprite(FaceAtlas.SPRITE_BRAND);
+    	if(brand != null && !m_HideBrand){
+    		int w = (int) (brand.width() * scale);
+    		int h = (int) (brand.height() * scale);
+    		dst.set(centerX - (w / 2), m_BrandMarginTop, centerX + (w / 2), m_BrandMarginTop + h);
+    		canvas.drawBitmap(atlas.bitmap, brand, dst, m_AtlasPaint);
+    	}
+    	if(m_Markers != null){
+    		m_Markers.draw(canvas);
+    	}
+    	if(m_Digital != null){
+    		m_Digital.draw(canvas);
+    	}
+    	if(m_ZoneDials != null){
+    		m_ZoneDials.draw(canvas);
+    	}
+    	return scale;
+    }
+    
+    private void drawAtlasHands(Canvas canvas, int centerX, int centerY, float scale,
+    		float hourDegrees, float minuteDegrees, float secondDegrees){
+    	final FaceAtlas atlas = m_Atlas;
+    	final Rect dst = m_AtlasDst;
+    	if(!m_HideHourHand){
+    		ClockHands.draw(canvas, centerX, centerY, scale, hourDegrees,
+    				atlas, FaceAtlas.SPRITE_HOUR, dst, m_AtlasPaint);
+    	}
+    	if(!m_HideMinuteHand){
+    		ClockHands.draw(canvas, centerX, centerY, scale, minuteDegrees,
+    				atlas, FaceAtlas.SPRITE_MINUTE, dst, m_AtlasPaint);
+    	}
+    	if(isSecondHandShown()){
+    		ClockHands.draw(canvas, centerX, centerY, scale, secondDegrees,
+    				atlas, FaceAtlas.SPRITE_SECOND, dst, m_AtlasPaint);
+    	}
+    }
+    
+    private void startTick(){
+    	//the last animation is done by now, its target is where the hands are
+    	m_FromHourDegrees = ClockHands.hourDegrees(m_CurrentHour);
+    	m_FromMinuteDegrees = ClockHands.minuteDegrees(m_CurrentMinutes);
+    	m_FromSecondDegrees = ClockHands.secondDegrees(m_CurrentSeconds);
+    	m_TickStart = SystemClock.uptimeMillis();
+    	m_TickAnimating = true;
+    	mHandler.removeMessages(MSG_TICK_FRAME);
+    	mHandler.sendEmptyMessageDelayed(MSG_TICK_FRAME, TICK_FRAME_DELAY);
+    }
+    
+    private float getTickProgress(){
+    	float fraction = (float) (SystemClock.uptimeMillis() - m_TickStart) / m_TickDuration;
+    	if(fraction >= 1.0f){
+    		return 1.0f;
+    	}
+    	return m_TickInterpolator.getInterpolation(fraction);
+    }
+    
+    /**
+     * Interpolate between two angles the short way, so 354 to 0 moves forward.
+     */
+    private static float ease(float from, float to, float progress){
+    	float delta = to - from;
+    	if(delta < -180.0f){
+    		delta += 360.0f;
+    	}else if(delta > 180.0f){
+    		delta -= 360.0f;
+    	}
+    	return from + delta * progress;
+    }
 
-	/**
-	 * @param canvas
-	 * @param centerX
-	 * @param centerY
-	 * @param scale
-	 * @param drawable
-	 */
-	private void draw(Canvas canvas, int centerX, int centerY, float scale,
-			final Drawable drawable) {
-		int w = (int) (drawable.getIntrinsicWidth() * scale);
-		int h = (int) (drawable.getIntrinsicHeight() * scale);
-		drawable.setBounds(
-				centerX - (w / 2), centerY - (h / 2), 
-				centerX + (w / 2), centerY + (h / 2));
-		drawable.draw(canvas);
-	}
-	
-	private void drawBrand(Canvas canvas, int centerX, int centerY, float scale){
-		final Drawable drawable = m_BrandDraw;
-		int w = (int) (drawable.getIntrinsicWidth() * scale);
-		int h = (int) (drawable.getIntrinsicHeight() * scale);
-		drawable.setBounds(centerX - (w / 2), m_BrandMarginTop, centerX + (w / 2), m_BrandMarginTop + h);
-		drawable.draw(canvas);
-	}
-
-    private void onTimeChanged() {
-        m_CurrentTime.setToNow();
+    /**
+     * @param animate true for the regular tick, false when the time jumped
+     */
+    private void onTimeChanged(boolean animate) {
+        //the animation costs frames, only when the PowerGovernor allows the sweep rate
+        if(animate && m_TickDuration > 0 && !m_SweepMode && m_TickLevel >= PowerGovernor.LEVEL_SWEEP){
+        	startTick();
+        }else{
+        	m_TickAnimating = false;
+        }
+        
+        long now = System.currentTimeMillis();
+        //seconds since the epoch in the clock's zone, the offset is only looked up on a transition
+        long localMillis = now + m_ZoneOffset.getOffset(now);
+        long localSeconds = localMillis / ONESECOND;
 
-        int hour = m_CurrentTime.hour;
-        int minute = m_CurrentTime.minute;
-        int second = m_CurrentTime.second;
+        int hour = (int) (localSeconds / 3600 % 24);
+        int minute = (int) (localSeconds / 60 % 60);
+        int second = (int) (localSeconds % 60);
 
         m_CurrentSeconds = second;
+        if(isSweeping()){
+        	m_CurrentSeconds += (localMillis % ONESECOND) / (float) ONESECOND;
+        }
         m_CurrentMinutes = minute + m_CurrentSeconds / 60.0f;
         m_CurrentHour = hour + m_CurrentMinutes / 60.0f;
         m_CurrentHour %= 12;
-        debug("m_CurrentHour is " + m_CurrentHour);
         m_NeedRedraw = true;
+        if(m_Digital != null){
+        	m_Digital.update(localMillis, now, m_ZoneOffset.getTimeZone().getID());
+        }
+        //the other zones from the same time read
+        if(m_ZoneDials != null){
+        	m_ZoneDials.update(now);
+        }
+        //only drawn again when the countdown arc shrank by a pixel
+        if(m_Markers != null){
+        	m_Markers.update(now, m_ZoneOffset);
+        }
 
-        //updateContentDescription(mCalendar);
+        long localMinute = localSeconds / 60;
+        if(localMinute != m_DescribedMinute){
+        	updateContentDescription(now, localMinute);
+        }
     }
     
 
 	static final int MSG_BASE = 0;
     static final int MSG_ONESECOND = MSG_BASE + 1;
+    static final int MSG_FACE_READY = MSG_BASE + 2;
+    static final int MSG_TICK_FRAME = MSG_BASE + 3;
+    static final int MSG_SWEEP_FRAME = MSG_BASE + 4;
+    static final int MSG_CHRONOGRAPH_FRAME = MSG_BASE + 5;
+    static final int MSG_MARKER_DUE = MSG_BASE + 6;
+    
+    private static final int TICK_FRAME_DELAY = 16;
+    private static final float DEFAULT_TICK_TENSION = 3.0f;
+    
+    private static final int PLACEHOLDER_COLOR = 0x20000000;
+    private static final int DEFAULT_DIGITAL_COLOR = 0xff000000;
     
     static final int ONESECOND = 1000;
     class ClockHandler extends Handler{
@@ -435,9 +1653,49 @@ public class RealAnalogClock3 extends View {
 				break;
 				
 			case MSG_ONESECOND:
-	            onTimeChanged();
+	            onTimeChanged(true);
 	            invalidate();
-	            mHandler.sendEmptyMessageDelayed(MSG_ONESECOND, ONESECOND);
+	            if(m_TickLevel >= PowerGovernor.LEVEL_TICK){
+	            	mHandler.sendEmptyMessageDelayed(MSG_ONESECOND, ONESECOND);
+	            }
+				break;
+				
+			case MSG_TICK_FRAME:
+				m_NeedRedraw = true;
+				invalidate();
+				if(SystemClock.uptimeMillis() - m_TickStart < m_TickDuration){
+					mHandler.sendEmptyMessageDelayed(MSG_TICK_FRAME, TICK_FRAME_DELAY);
+				}else{
+					//this frame draws the hands at rest, nothing more until the next second
+					m_TickAnimating = false;
+				}
+				break;
+				
+			case MSG_SWEEP_FRAME:
+				if(isSweeping() && m_IsAttachedToWindow){
+					onTimeChanged(false);
+					invalidate();
+					mHandler.sendEmptyMessageDelayed(MSG_SWEEP_FRAME, TICK_FRAME_DELAY);
+				}
+				break;
+				
+			case MSG_CHRONOGRAPH_FRAME:
+				if(m_Chronograph != null && m_Chronograph.isRunning() && m_IsAttachedToWindow){
+					invalidateChronograph();
+					mHandler.sendEmptyMessageDelayed(MSG_CHRONOGRAPH_FRAME, m_ChronographFrameDelay);
+				}
+				break;
+				
+			case MSG_MARKER_DUE:
+				if(m_Markers != null){
+					onMarkersDue();
+				}
+				break;
+				
+			case MSG_FACE_READY:
+				if(msg.arg1 == m_FaceGeneration){
+					onFaceReady((FaceCompositor.FaceLayer) msg.obj);
+				}
 				break;
 
 			default:
@@ -447,23 +1705,48 @@ public class RealAnalogClock3 extends View {
     	}
     }
     
-    private final BroadcastReceiver mIntentReceiver = new BroadcastReceiver() {
+    private final TimeEventHub.TimeListener mTimeListener = new TimeEventHub.TimeListener() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            if (intent.getAction().equals(Intent.ACTION_TIMEZONE_CHANGED)) {
-                String tz = intent.getStringExtra("time-zone");
-                m_CurrentTime = new Time(TimeZone.getTimeZone(tz).getID());
+        public void onTimeEvent(String action, TimeZone timeZone) {
+            if (action.equals(Intent.ACTION_TIMEZONE_CHANGED)) {
+                //a shared cache is only set once for all clocks
+                if (m_TimeZoneId == null && m_ZoneOffset.getTimeZone() != timeZone) {
+                    m_ZoneOffset.setTimeZone(timeZone);
+                }
+                if (m_ZoneDials != null) {
+                    m_ZoneDials.onDeviceZoneChanged(timeZone);
+                }
+            } else if (action.equals(Intent.ACTION_TIME_CHANGED)) {
+                m_ZoneOffset.invalidate();
+                if (m_ZoneDials != null) {
+                    m_ZoneDials.onTimeChanged();
+                }
+                //also sent when the user switches between 12 and 24 hours
+                if (m_Digital != null) {
+                    m_Digital.set24Hour(DateFormat.is24HourFormat(mContext));
+                }
+            } else if (action.equals(TimeEventHub.ACTION_TICK_LEVEL_CHANGED)) {
+                m_TickLevel = TimeEventHub.getInstance(getContext()).getTickLevel();
+                scheduleTick();
             }
-            onTimeChanged();
+            onTimeChanged(false);
             invalidate();
+            scheduleMarkers();
         }
     };
 
-    private void updateContentDescription(Time time) {
+    private void updateContentDescription(long millis, long localMinute) {
+        if (m_AccessibilityManager == null || !m_AccessibilityManager.isEnabled()) {
+            //nobody listens, describe the time as soon as a service is turned on
+            m_DescribedMinute = -1;
+            return;
+        }
+        m_DescribedMinute = localMinute;
         final int flags = DateUtils.FORMAT_SHOW_TIME | DateUtils.FORMAT_24HOUR;
-        String contentDescription = DateUtils.formatDateTime(mContext,
-                time.toMillis(false), flags);
-        setContentDescription(contentDescription);
+        m_DescriptionBuilder.setLength(0);
+        DateUtils.formatDateRange(mContext, m_DescriptionFormatter,
+                millis, millis, flags, m_ZoneOffset.getTimeZone().getID());
+        setContentDescription(m_DescriptionBuilder.toString());
     }
     
 }
@@ -0,0 +1,175 @@
+package com.sherchen.realclock;
+
+import java.util.TimeZone;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Message;
+import android.os.SystemClock;
+import android.service.dreams.DreamService;
+import android.util.Log;
+import android.view.View;
+
+/**
+ * The watch face of R.style.RealClockWatchFace as a daydream, drawn by a
+ * {@link WatchFaceRenderer}. The dream starts interactive and falls to the
+ * ambient mode after a while or when the {@link PowerGovernor} drops to
+ * LEVEL_MINUTE, then the screen is dimmed and the face only changes once a
+ * minute. A daydream may stay on for hours, so burn-in protection is on.
+ * <p>
+ * The frame costs of each mode are logged when the dream stops. The window
+ * is hardware accelerated, so they are the times to record a frame, see
+ * {@link WatchFaceRenderer#getFrameNanos(int)}:
+ * <pre>
+ * adb logcat -s RealClockDream
+ * </pre>
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+public class RealClockDream extends DreamService {
+
+	private static final String TAG = "RealClockDream";
+
+	//how long the dream shows the interactive face
+	private static final int AMBIENT_DELAY = 30 * 1000;
+
+	private WatchFaceView mView;
+
+	@Override
+	public void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		setInteractive(false);
+		setFullscreen(true);
+		mView = new WatchFaceView(this);
+		setContentView(mView);
+	}
+
+	@Override
+	public void onDreamingStarted() {
+		super.onDreamingStarted();
+		mView.start();
+	}
+
+	@Override
+	public void onDreamingStopped() {
+		super.onDreamingStopped();
+		mView.stop();
+		WatchFaceRenderer renderer = mView.mRenderer;
+		String[] names = { "interactive", "ambient", "low-bit", "burn-in" };
+		for (int mode = 0; mode < names.length; mode++) {
+			if (renderer.getFrameCount(mode) > 0) {
+				Log.i(TAG, names[mode] + " frames " + renderer.getFrameCount(mode)
+						+ ", mean " + renderer.getFrameNanos(mode) / 1000 + "us to record");
+			}
+		}
+	}
+
+	@Override
+	public void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		mView.mRenderer.release();
+		mView = null;
+	}
+
+	private class WatchFaceView extends View {
+
+		private static final int MSG_FRAME = 0;
+		private static final int MSG_AMBIENT = 1;
+
+		private final WatchFaceRenderer mRenderer;
+		private boolean mStarted;
+		private boolean mTimedOut;
+		private int mTickLevel = PowerGovernor.LEVEL_TICK;
+
+		private final Handler mHandler = new Handler() {
+			@Override
+			public void handleMessage(Message msg) {
+				switch (msg.what) {
+				case MSG_FRAME:
+					invalidate();
+					scheduleFrame();
+					break;
+
+				case MSG_AMBIENT:
+					mTimedOut = true;
+					updateAmbient();
+					break;
+
+				default:
+					break;
+				}
+			}
+		};
+
+		WatchFaceView(Context context) {
+			super(context);
+			mRenderer = new WatchFaceRenderer(context.getResources(),
+					FaceConfig.fromStyle(context, R.style.RealClockWatchFace));
+			mRenderer.setBurnInProtection(true);
+		}
+
+		void start() {
+			mStarted = true;
+			mTimedOut = false;
+			TimeEventHub hub = TimeEventHub.getInstance(getContext());
+			hub.subscribe(mTimeListener);
+			mTickLevel = hub.getTickLevel();
+			mRenderer.getFace().setTimeZone(hub.getTimeZone());
+			mHandler.sendEmptyMessageDelayed(MSG_AMBIENT, AMBIENT_DELAY);
+			updateAmbient();
+		}
+
+		void stop() {
+			mStarted = false;
+			TimeEventHub.getInstance(getContext()).unsubscribe(mTimeListener);
+			mHandler.removeMessages(MSG_FRAME);
+			mHandler.removeMessages(MSG_AMBIENT);
+		}
+
+		private void updateAmbient() {
+			boolean ambient = mTimedOut || mTickLevel == PowerGovernor.LEVEL_MINUTE;
+			if (ambient != mRenderer.isAmbient()) {
+				mRenderer.setAmbient(ambient);
+				setScreenBright(!ambient);
+			}
+			invalidate();
+			scheduleFrame();
+		}
+
+		private void scheduleFrame() {
+			mHandler.removeMessages(MSG_FRAME);
+			if (mStarted) {
+				long delay = mRenderer.getNextFrameDelay(System.currentTimeMillis());
+				mHandler.sendEmptyMessageAtTime(MSG_FRAME, SystemClock.uptimeMillis() + delay);
+			}
+		}
+
+		@Override
+		protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+			super.onSizeChanged(w, h, oldw, oldh);
+			mRenderer.setSize(w, h);
+		}
+
+		@Override
+		protected void onDraw(Canvas canvas) {
+			mRenderer.draw(canvas, System.currentTimeMillis());
+		}
+
+		private final TimeEventHub.TimeListener mTimeListener = new TimeEventHub.TimeListener() {
+			@Override
+			public void onTimeEvent(String action, TimeZone timeZone) {
+				if (action.equals(Intent.ACTION_TIMEZONE_CHANGED)) {
+					mRenderer.getFace().setTimeZone(timeZone);
+				} else if (action.equals(Intent.ACTION_TIME_CHANGED)) {
+					mRenderer.getFace().onTimeChanged();
+				} else if (action.equals(TimeEventHub.ACTION_TICK_LEVEL_CHANGED)) {
+					mTickLevel = TimeEventHub.getInstance(getContext()).getTickLevel();
+				}
+				updateAmbient();
+			}
+		};
+	}
+}
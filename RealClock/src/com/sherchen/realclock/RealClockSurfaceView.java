@@ -0,0 +1,385 @@
+package com.sherchen.realclock;
+
+import java.util.TimeZone;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+/**
+ * A full screen variant of {@link RealAnalogClock3} with a sweeping second
+ * hand. It takes the same attributes, but renders on its own thread into a
+ * surface, so no work per frame is left on the UI thread.
+ */
+public class RealClockSurfaceView extends SurfaceView implements SurfaceHolder.Callback {
+
+	private static final String TAG = "RealClockSurfaceView";
+	private static final boolean DEBUG = false;
+	private void debug(String msg){
+		if(DEBUG) android.util.Log.v(TAG, msg);
+	}
+
+	private static final int DEFAULT_BRAND_MARGIN_TOP = 5;
+	private static final int DEFAULT_FRAME_RATE = 30;
+	private static final int ONESECOND = 1000;
+
+	private final Resources mResources;
+
+	private final int m_DialId;
+	private final int m_BrandId;
+	private final int m_HourHandId;
+	private final int m_MinuteHandId;
+	private final int m_SecondHandId;
+	private final int m_BrandMarginTop;
+	private final String m_TimeZoneId;
+
+	private volatile long m_FramePeriod;
+	//how often the PowerGovernor lets the clock draw
+	private volatile int m_TickLevel = PowerGovernor.LEVEL_SWEEP;
+	private volatile int m_SurfaceColor = Color.BLACK;
+
+	private RenderThread m_RenderThread;
+	private boolean m_IsAttachedToWindow;
+
+	public RealClockSurfaceView(Context context) {
+		this(context, null);
+	}
+
+	public RealClockSurfaceView(Context context, AttributeSet attrs) {
+		this(context, attrs, 0);
+	}
+
+	public RealClockSurfaceView(Context context, AttributeSet attrs, int defStyle) {
+		super(context, attrs, defStyle);
+		mResources = context.getResources();
+
+		//only the ids are kept, the render thread decodes them
+		TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.RealAnalogClock, defStyle, 0);
+		m_DialId = a.getResourceId(R.styleable.RealAnalogClock_clock_dial, 0);
+		m_BrandId = a.getResourceId(R.styleable.RealAnalogClock_clock_brand, 0);
+		m_BrandMarginTop = a.getDimensionPixelSize(R.styleable.RealAnalogClock_clock_brand_margin_top, DEFAULT_BRAND_MARGIN_TOP);
+		m_HourHandId = a.getResourceId(R.styleable.RealAnalogClock_clock_pointer_hour, 0);
+		m_MinuteHandId = a.getResourceId(R.styleable.RealAnalogClock_clock_pointer_minute, 0);
+		m_SecondHandId = a.getResourceId(R.styleable.RealAnalogClock_clock_pointer_second, 0);
+		m_TimeZoneId = a.getString(R.styleable.RealAnalogClock_clock_timezone);
+		setFrameRate(a.getInt(R.styleable.RealAnalogClock_clock_frame_rate, DEFAULT_FRAME_RATE));
+		a.recycle();
+
+		getHolder().addCallback(this);
+	}
+
+	/**
+	 * @param framesPerSecond how often the sweeping second hand is drawn, 1 gives a ticking clock
+	 */
+	public void setFrameRate(int framesPerSecond) {
+		m_FramePeriod = ONESECOND / Math.max(1, Math.min(framesPerSecond, 60));
+	}
+
+	/**
+	 * @param color the color the surface is cleared with under the dial
+	 */
+	public void setSurfaceColor(int color) {
+		m_SurfaceColor = color;
+	}
+
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		if (!m_IsAttachedToWindow) {
+			m_IsAttachedToWindow = true;
+			TimeEventHub.getInstance(getContext()).subscribe(mTimeListener);
+		}
+		m_TickLevel = TimeEventHub.getInstance(getContext()).getTickLevel();
+		TimeEventHub.getInstance(getContext()).notifyClockAttached(this);
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		if (m_IsAttachedToWindow) {
+			TimeEventHub.getInstance(getContext()).unsubscribe(mTimeListener);
+			m_IsAttachedToWindow = false;
+		}
+	}
+
+	//--------------------------------------------------------
+	@Override
+	public void surfaceCreated(SurfaceHolder holder) {
+		m_RenderThread = new RenderThread(holder);
+		m_RenderThread.start();
+	}
+
+	@Override
+	public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+		m_RenderThread.setSurfaceSize(width, height);
+	}
+
+	@Override
+	public void surfaceDestroyed(SurfaceHolder holder) {
+		//the surface is gone when this returns, so wait for the last frame
+		RenderThread thread = m_RenderThread;
+		m_RenderThread = null;
+		thread.quit();
+		boolean retry = true;
+		while (retry) {
+			try {
+				thread.join();
+				retry = false;
+			} catch (InterruptedException e) {
+				//keep waiting
+			}
+		}
+	}
+
+	/**
+	 * @return the frame period allowed by the PowerGovernor
+	 */
+	private long getEffectivePeriod() {
+		switch (m_TickLevel) {
+		case PowerGovernor.LEVEL_MINUTE:
+			return 60 * ONESECOND;
+		case PowerGovernor.LEVEL_TICK:
+			return Math.max(m_FramePeriod, ONESECOND);
+		default:
+			return m_FramePeriod;
+		}
+	}
+
+	private final TimeEventHub.TimeListener mTimeListener = new TimeEventHub.TimeListener() {
+		@Override
+		public void onTimeEvent(String action, TimeZone timeZone) {
+			if (action.equals(TimeEventHub.ACTION_TICK_LEVEL_CHANGED)) {
+				m_TickLevel = TimeEventHub.getInstance(getContext()).getTickLevel();
+			}
+			RenderThread thread = m_RenderThread;
+			if (thread == null) {
+				return;
+			}
+			if (action.equals(Intent.ACTION_TIMEZONE_CHANGED)) {
+				if (m_TimeZoneId == null) {
+					thread.setTimeZone(timeZone);
+				}
+				thread.wake();
+			} else if (action.equals(Intent.ACTION_TIME_CHANGED)) {
+				thread.setTimeZone(null);
+				thread.wake();
+			} else if (action.equals(TimeEventHub.ACTION_TICK_LEVEL_CHANGED)) {
+				//it may sleep for a minute at LEVEL_MINUTE
+				thread.wake();
+			}
+		}
+	};
+
+	/**
+	 * Decodes the face, then draws a frame on every frame boundary of the wall
+	 * clock until it is told to quit.
+	 */
+	private class RenderThread extends Thread {
+
+		private final SurfaceHolder m_Holder;
+		private volatile boolean m_Running = true;
+
+		//guarded by this, which is also the lock the thread waits on between frames
+		private int m_Width;
+		private int m_Height;
+		private boolean m_SizeChanged;
+		private boolean m_WakeUp;
+		private boolean m_ZoneChanged;
+		private TimeZone m_PendingZone;
+
+		private ZoneOffsetCache m_ZoneOffset;
+		private FaceCompositor.FaceLayer m_FaceLayer;
+		private Drawable m_HourHand;
+		private Drawable m_MinuteHand;
+		private Drawable m_SecondHand;
+
+		RenderThread(SurfaceHolder holder) {
+			super(TAG);
+			m_Holder = holder;
+		}
+
+		synchronized void setSurfaceSize(int width, int height) {
+			m_Width = width;
+			m_Height = height;
+			m_SizeChanged = true;
+			wake();
+		}
+
+		/**
+		 * @param timeZone the new zone, or null if only the wall time was set
+		 */
+		synchronized void setTimeZone(TimeZone timeZone) {
+			m_PendingZone = timeZone;
+			m_ZoneChanged = true;
+		}
+
+		void quit() {
+			m_Running = false;
+			wake();
+		}
+
+		/**
+		 * Draw a frame now instead of at the next frame boundary. No interrupt,
+		 * it would cancel a face being composed.
+		 */
+		synchronized void wake() {
+			m_WakeUp = true;
+			notify();
+		}
+
+		/**
+		 * Wait for the given time or until woken up.
+		 */
+		private synchronized void waitFor(long millis) {
+			long until = System.currentTimeMillis() + millis;
+			long left = millis;
+			while (!m_WakeUp && m_Running && left > 0) {
+				try {
+					wait(left);
+				} catch (InterruptedException e) {
+					//nobody interrupts this thread, go on with the next frame
+					break;
+				}
+				left = until - System.currentTimeMillis();
+			}
+			m_WakeUp = false;
+		}
+
+		@Override
+		public void run() {
+			android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_DISPLAY);
+			m_ZoneOffset = new ZoneOffsetCache(m_TimeZoneId == null
+					? TimeZone.getDefault() : TimeZone.getTimeZone(m_TimeZoneId));
+			m_HourHand = load(m_HourHandId);
+			m_MinuteHand = load(m_MinuteHandId);
+			m_SecondHand = load(m_SecondHandId);
+
+			while (m_Running) {
+				updateState();
+				long now = System.currentTimeMillis();
+				Canvas canvas = m_Holder.lockCanvas();
+				if (canvas != null) {
+					try {
+						drawFrame(canvas, now);
+					} finally {
+						m_Holder.unlockCanvasAndPost(canvas);
+					}
+				}
+
+				//sleep to the next frame boundary of the wall clock, so the
+				//second hand passes each mark exactly on the second
+				long period = getEffectivePeriod();
+				long current = System.currentTimeMillis();
+				long next = (current / period + 1) * period;
+				waitFor(next - current);
+			}
+			release();
+			debug("render thread stopped");
+		}
+
+		private Drawable load(int id) {
+			return id == 0 ? null : mResources.getDrawable(id);
+		}
+
+		private void updateState() {
+			int width;
+			int height;
+			synchronized (this) {
+				if (m_ZoneChanged) {
+					m_ZoneChanged = false;
+					if (m_PendingZone != null) {
+						m_ZoneOffset.setTimeZone(m_PendingZone);
+					} else {
+						m_ZoneOffset.invalidate();
+					}
+				}
+				if (!m_SizeChanged) {
+					return;
+				}
+				m_SizeChanged = false;
+				width = m_Width;
+				height = m_Height;
+			}
+
+			final FaceCompositor.FaceLayer old = m_FaceLayer;
+			FaceCompositor.FaceRequest request = new FaceCompositor.FaceRequest();
+			request.resources = mResources;
+			request.dialId = m_DialId;
+			request.brandId = m_BrandId;
+			request.brandMarginTop = m_BrandMarginTop;
+			if (old != null) {
+				//decoded once, only composed again for the new size
+				request.dial = old.dial;
+				request.brand = old.brand;
+			}
+			request.hideBrand = m_BrandId == 0;
+			request.width = width;
+			request.height = height;
+			m_FaceLayer = FaceCompositor.composeNow(request);
+			//only this thread draws the layer, it can go once the new one is there
+			if (old != null) {
+				old.bitmap.recycle();
+			}
+		}
+
+		private void drawFrame(Canvas canvas, long now) {
+			canvas.drawColor(m_SurfaceColor);
+			final FaceCompositor.FaceLayer face = m_FaceLayer;
+			int centerX;
+			int centerY;
+			float scale;
+			if (face != null) {
+				canvas.drawBitmap(face.bitmap, 0, 0, null);
+				centerX = face.bitmap.getWidth() / 2;
+				centerY = face.bitmap.getHeight() / 2;
+				scale = face.scale;
+			} else {
+				//no dial, the hands at their own size like RealAnalogClock3 does
+				centerX = canvas.getWidth() / 2;
+				centerY = canvas.getHeight() / 2;
+				scale = 1.0f;
+			}
+
+			long localMillis = now + m_ZoneOffset.getOffset(now);
+			float seconds = (localMillis % 60000) / (float) ONESECOND;
+			float minutes = (localMillis / 60000 % 60) + seconds / 60.0f;
+			float hour = (localMillis / 3600000 % 12) + minutes / 60.0f;
+			long period = getEffectivePeriod();
+			if (period >= ONESECOND) {
+				//ticking, the second hand stays on the mark
+				seconds = (int) seconds;
+			}
+
+			if (m_HourHand != null) {
+				ClockHands.draw(canvas, centerX, centerY, scale,
+						ClockHands.hourDegrees(hour), m_HourHand);
+			}
+			if (m_MinuteHand != null) {
+				ClockHands.draw(canvas, centerX, centerY, scale,
+						ClockHands.minuteDegrees(minutes), m_MinuteHand);
+			}
+			//a second hand standing for a minute would be wrong most of the time
+			if (m_SecondHand != null && period < 60 * ONESECOND) {
+				ClockHands.draw(canvas, centerX, centerY, scale,
+						ClockHands.secondDegrees(seconds), m_SecondHand);
+			}
+		}
+
+		private void release() {
+			if (m_FaceLayer != null) {
+				m_FaceLayer.bitmap.recycle();
+				m_FaceLayer = null;
+			}
+			m_HourHand = null;
+			m_MinuteHand = null;
+			m_SecondHand = null;
+		}
+	}
+}
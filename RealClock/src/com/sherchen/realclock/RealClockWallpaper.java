@@ -0,0 +1,225 @@
+package com.sherchen.realclock;
+
+import java.util.TimeZone;
+
+import android.content.Intent;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Handler;
+import android.os.Message;
+import android.os.SystemClock;
+import android.service.wallpaper.WallpaperService;
+import android.view.MotionEvent;
+import android.view.SurfaceHolder;
+
+/**
+ * The clock face as a live wallpaper, the face is the style
+ * R.style.RealClockWallpaperFace. A frame is the cached dial layer of a
+ * {@link ClockFace} and the hands, so scrolling the home screens only moves
+ * the layer and never renders the dial again.
+ * <p>
+ * The engine ticks once a second while the wallpaper is visible and not
+ * at all while hidden. When nobody touched or scrolled the launcher for a
+ * while it drops to one frame a minute without the second hand, the
+ * {@link PowerGovernor} can lower the rate further.
+ */
+public class RealClockWallpaper extends WallpaperService {
+
+	@Override
+	public Engine onCreateEngine() {
+		return new ClockEngine();
+	}
+
+	private class ClockEngine extends Engine {
+
+		private static final int ONESECOND = 1000;
+		private static final int ONEMINUTE = 60 * ONESECOND;
+		//without a touch or scroll for that long the launcher counts as idle
+		private static final int IDLE_TIMEOUT = 60 * ONESECOND;
+		//of the smaller side of the screen
+		private static final float CLOCK_SIZE = 0.8f;
+		//how far the clock moves over all home screens, of the screen width
+		private static final float PARALLAX = 0.25f;
+
+		private static final int MSG_DRAW = 0;
+		private static final int MSG_IDLE = 1;
+
+		private ClockFace mFace;
+		private int mWidth;
+		private int mHeight;
+		private float mOffsetX = 0.5f;
+		private boolean mIdle;
+		private int mTickLevel = PowerGovernor.LEVEL_TICK;
+
+		private final Handler mHandler = new Handler() {
+			@Override
+			public void handleMessage(Message msg) {
+				switch (msg.what) {
+				case MSG_DRAW:
+					drawFrame();
+					break;
+
+				case MSG_IDLE:
+					mIdle = true;
+					updateSeconds();
+					drawFrame();
+					break;
+
+				default:
+					break;
+				}
+			}
+		};
+
+		@Override
+		public void onCreate(SurfaceHolder surfaceHolder) {
+			super.onCreate(surfaceHolder);
+			//only to notice when the launcher is used, the touches are not handled
+			setTouchEventsEnabled(true);
+		}
+
+		@Override
+		public void onDestroy() {
+			super.onDestroy();
+			stopTicking();
+			TimeEventHub.getInstance(RealClockWallpaper.this).unsubscribe(mTimeListener);
+			releaseFace();
+		}
+
+		@Override
+		public void onVisibilityChanged(boolean visible) {
+			TimeEventHub hub = TimeEventHub.getInstance(RealClockWallpaper.this);
+			if (visible) {
+				hub.subscribe(mTimeListener);
+				mTickLevel = hub.getTickLevel();
+				if (mFace != null) {
+					mFace.setTimeZone(hub.getTimeZone());
+				}
+				onActivity();
+			} else {
+				hub.unsubscribe(mTimeListener);
+				stopTicking();
+			}
+		}
+
+		@Override
+		public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+			super.onSurfaceChanged(holder, format, width, height);
+			mWidth = width;
+			mHeight = height;
+			if (mFace == null) {
+				mFace = new ClockFace(getResources(), FaceConfig.fromStyle(RealClockWallpaper.this, R.style.RealClockWallpaperFace));
+				mFace.setTimeZone(TimeEventHub.getInstance(RealClockWallpaper.this).getTimeZone());
+				updateSeconds();
+			}
+			int size = (int) (Math.min(width, height) * CLOCK_SIZE);
+			mFace.setSize(size, size);
+			drawFrame();
+		}
+
+		@Override
+		public void onSurfaceDestroyed(SurfaceHolder holder) {
+			super.onSurfaceDestroyed(holder);
+			stopTicking();
+			//nothing draws on the surface anymore, the layer and hands can go
+			releaseFace();
+		}
+
+		@Override
+		public void onOffsetsChanged(float xOffset, float yOffset, float xOffsetStep,
+				float yOffsetStep, int xPixelOffset, int yPixelOffset) {
+			mOffsetX = xOffset;
+			//the same layer at another place
+			onActivity();
+		}
+
+		@Override
+		public void onTouchEvent(MotionEvent event) {
+			if (mIdle) {
+				onActivity();
+			} else {
+				//only move the idle timeout, no frame for every touch
+				mHandler.removeMessages(MSG_IDLE);
+				mHandler.sendEmptyMessageDelayed(MSG_IDLE, IDLE_TIMEOUT);
+			}
+		}
+
+		/**
+		 * The launcher was used, tick again and restart the idle timeout.
+		 */
+		private void onActivity() {
+			mIdle = false;
+			updateSeconds();
+			drawFrame();
+			mHandler.removeMessages(MSG_IDLE);
+			if (isVisible()) {
+				mHandler.sendEmptyMessageDelayed(MSG_IDLE, IDLE_TIMEOUT);
+			}
+		}
+
+		private void stopTicking() {
+			mHandler.removeMessages(MSG_DRAW);
+			mHandler.removeMessages(MSG_IDLE);
+		}
+
+		private void releaseFace() {
+			if (mFace != null) {
+				mFace.release();
+				mFace = null;
+			}
+		}
+
+		private boolean isTicking() {
+			return !mIdle && mTickLevel >= PowerGovernor.LEVEL_TICK;
+		}
+
+		private void updateSeconds() {
+			if (mFace != null) {
+				mFace.setShowSeconds(isTicking());
+			}
+		}
+
+		private void drawFrame() {
+			mHandler.removeMessages(MSG_DRAW);
+			if (mFace == null || !isVisible()) {
+				return;
+			}
+			SurfaceHolder holder = getSurfaceHolder();
+			long now = System.currentTimeMillis();
+			Canvas canvas = holder.lockCanvas();
+			if (canvas != null) {
+				try {
+					canvas.drawColor(Color.BLACK);
+					float left = (mWidth - mFace.getWidth()) / 2 + (0.5f - mOffsetX) * mWidth * PARALLAX;
+					float top = (mHeight - mFace.getHeight()) / 2;
+					canvas.translate(left, top);
+					mFace.draw(canvas, now);
+				} finally {
+					holder.unlockCanvasAndPost(canvas);
+				}
+			}
+			//on the next second or minute of the wall clock
+			long period = isTicking() ? ONESECOND : ONEMINUTE;
+			long delay = period - System.currentTimeMillis() % period;
+			mHandler.sendEmptyMessageAtTime(MSG_DRAW, SystemClock.uptimeMillis() + delay);
+		}
+
+		private final TimeEventHub.TimeListener mTimeListener = new TimeEventHub.TimeListener() {
+			@Override
+			public void onTimeEvent(String action, TimeZone timeZone) {
+				if (mFace != null) {
+					if (action.equals(Intent.ACTION_TIMEZONE_CHANGED)) {
+						mFace.setTimeZone(timeZone);
+					} else if (action.equals(Intent.ACTION_TIME_CHANGED)) {
+						mFace.onTimeChanged();
+					}
+				}
+				if (action.equals(TimeEventHub.ACTION_TICK_LEVEL_CHANGED)) {
+					mTickLevel = TimeEventHub.getInstance(RealClockWallpaper.this).getTickLevel();
+					updateSeconds();
+				}
+				drawFrame();
+			}
+		};
+	}
+}
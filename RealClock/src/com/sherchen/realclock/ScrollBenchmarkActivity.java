@@ -0,0 +1,292 @@
+package com.sherchen.realclock;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Message;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+
+/**
+ * Scrolls a long list of {@link RealAnalogClock3} items through a few faces
+ * and time zones and measures what a bind of a recycled clock costs: the
+ * objects allocated and the time spent, besides the main thread time and
+ * dropped frames while scrolling. The report is logged and written to the
+ * external files directory of the app like the one of StressActivity:
+ * <pre>
+ * adb shell am start -n com.sherchen.realclock/.ScrollBenchmarkActivity [--ez pool false] [--ei seconds 20]
+ * adb logcat -s ScrollBenchmark
+ * </pre>
+ * With pool false the items are bound through the setters, for comparison.
+ */
+public class ScrollBenchmarkActivity extends Activity {
+
+	private static final String TAG = "ScrollBenchmark";
+
+	static final String EXTRA_POOL = "pool";
+	static final String EXTRA_SECONDS = "seconds";
+
+	private static final int ITEM_COUNT = 100000;
+	private static final int DEFAULT_SECONDS = 20;
+	//every face and zone has been seen by then, the pool is warm
+	private static final int WARMUP_BINDS = 100;
+	private static final int SCROLL_PERIOD = 500;
+	private static final int SETTLE_DELAY = 2000;
+
+	private static final String[] ZONES = {
+		null, "UTC", "Europe/London", "Asia/Shanghai", "America/New_York", "Australia/Sydney",
+	};
+
+	private static final int MSG_START = 0;
+	private static final int MSG_SCROLL = 1;
+	private static final int MSG_FINISH = 2;
+
+	private boolean m_Pool;
+	private int m_Seconds;
+	private FaceConfig[] m_Faces;
+	private ListView m_List;
+	private int m_ItemHeight;
+
+	private boolean m_Measuring;
+	private int m_Binds;
+	private long[] m_BindAllocs = new long[1024];
+	private long[] m_BindNanos = new long[1024];
+	private int m_Measured;
+	private final StressMonitor m_Monitor = new StressMonitor();
+
+	private final Handler mHandler = new Handler() {
+		@Override
+		public void handleMessage(Message msg) {
+			switch (msg.what) {
+			case MSG_START:
+				Debug.startAllocCounting();
+				m_Measuring = true;
+				m_Monitor.start();
+				sendEmptyMessage(MSG_SCROLL);
+				sendEmptyMessageDelayed(MSG_FINISH, m_Seconds * 1000L);
+				break;
+
+			case MSG_SCROLL:
+				m_List.smoothScrollBy(m_List.getHeight(), SCROLL_PERIOD);
+				sendEmptyMessageDelayed(MSG_SCROLL, SCROLL_PERIOD);
+				break;
+
+			case MSG_FINISH:
+				removeMessages(MSG_SCROLL);
+				m_Measuring = false;
+				m_Monitor.stop();
+				Debug.stopAllocCounting();
+				report();
+				break;
+
+			default:
+				break;
+			}
+		}
+	};
+
+	@Override
+	protected void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		m_Pool = getIntent().getBooleanExtra(EXTRA_POOL, true);
+		m_Seconds = Math.max(1, getIntent().getIntExtra(EXTRA_SECONDS, DEFAULT_SECONDS));
+		m_ItemHeight = getResources().getDisplayMetrics().widthPixels / 2;
+		m_Faces = buildFaces();
+
+		m_List = new ListView(this);
+		m_List.setAdapter(new ClockAdapter());
+		m_List.setRecyclerListener(new AbsListView.RecyclerListener() {
+			@Override
+			public void onMovedToScrapHeap(View view) {
+				if (m_Pool) {
+					((RealAnalogClock3) view).unbind();
+				}
+			}
+		});
+		setContentView(m_List);
+		mHandler.sendEmptyMessageDelayed(MSG_START, SETTLE_DELAY);
+	}
+
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		mHandler.removeMessages(MSG_START);
+		mHandler.removeMessages(MSG_SCROLL);
+		mHandler.removeMessages(MSG_FINISH);
+		if (m_Measuring) {
+			Debug.stopAllocCounting();
+		}
+		m_Monitor.stop();
+	}
+
+	private static FaceConfig[] buildFaces() {
+		FaceConfig real = new FaceConfig();
+		real.setDial(R.drawable.realclock_bg);
+		real.setHourHand(R.drawable.realclock_hour);
+		real.setMinuteHand(R.drawable.realclock_minute);
+		real.setSecondHand(R.drawable.realclock_second);
+
+		FaceConfig plain = new FaceConfig();
+		plain.setDial(R.drawable.clock_bg);
+		plain.setHourHand(R.drawable.clock_hour);
+		plain.setMinuteHand(R.drawable.clock_minute);
+		plain.setSecondHand(R.drawable.clock_second);
+
+		FaceConfig watch = new FaceConfig();
+		watch.setDial(R.drawable.watch_background);
+		watch.setBrand(R.drawable.watch_brand);
+		watch.setHourHand(R.drawable.watch_hour);
+		watch.setMinuteHand(R.drawable.watch_minute);
+		return new FaceConfig[] { real, plain, watch };
+	}
+
+	/**
+	 * Bind through the setters, what an adapter had to do before bind().
+	 * There is no setter for the brand, it is left out.
+	 */
+	private static void setFace(RealAnalogClock3 clock, FaceConfig face, String zoneId) {
+		clock.setDial(face.getDial());
+		clock.setHourHand(face.getHourHand());
+		clock.setMinuteHand(face.getMinuteHand());
+		clock.setSecondHand(face.getSecondHand());
+		clock.setTimeZone(zoneId);
+	}
+
+	private void record(long allocs, long nanos) {
+		if (m_Measured == m_BindAllocs.length) {
+			long[] a = new long[m_Measured * 2];
+			System.arraycopy(m_BindAllocs, 0, a, 0, m_Measured);
+			m_BindAllocs = a;
+			long[] n = new long[m_Measured * 2];
+			System.arraycopy(m_BindNanos, 0, n, 0, m_Measured);
+			m_BindNanos = n;
+		}
+		m_BindAllocs[m_Measured] = allocs;
+		m_BindNanos[m_Measured] = nanos;
+		m_Measured++;
+	}
+
+	private class ClockAdapter extends BaseAdapter {
+		@Override
+		public int getCount() {
+			return ITEM_COUNT;
+		}
+
+		@Override
+		public Object getItem(int position) {
+			return m_Faces[position % m_Faces.length];
+		}
+
+		@Override
+		public long getItemId(int position) {
+			return position;
+		}
+
+		@Override
+		public View getView(int position, View convertView, ViewGroup parent) {
+			RealAnalogClock3 clock = (RealAnalogClock3) convertView;
+			boolean recycled = clock != null;
+			if (!recycled) {
+				clock = new RealAnalogClock3(ScrollBenchmarkActivity.this);
+				clock.setLayoutParams(new AbsListView.LayoutParams(AbsListView.LayoutParams.MATCH_PARENT, m_ItemHeight));
+			}
+			FaceConfig face = m_Faces[position % m_Faces.length];
+			String zoneId = ZONES[position % ZONES.length];
+
+			//only the bind itself is measured, not the adapter around it
+			int allocs = Debug.getThreadAllocCount();
+			long start = System.nanoTime();
+			if (m_Pool) {
+				clock.bind(face, zoneId);
+			} else {
+				setFace(clock, face, zoneId);
+			}
+			long nanos = System.nanoTime() - start;
+			allocs = Debug.getThreadAllocCount() - allocs;
+
+			m_Binds++;
+			if (m_Measuring && recycled && m_Binds > WARMUP_BINDS) {
+				record(allocs, nanos);
+			}
+			return clock;
+		}
+	}
+
+	private void report() {
+		long[] allocs = new long[m_Measured];
+		long[] nanos = new long[m_Measured];
+		System.arraycopy(m_BindAllocs, 0, allocs, 0, m_Measured);
+		System.arraycopy(m_BindNanos, 0, nanos, 0, m_Measured);
+		int free = 0;
+		long total = 0;
+		for (long a : allocs) {
+			total += a;
+			if (a == 0) {
+				free++;
+			}
+		}
+		allocs = StressMonitor.sorted(allocs);
+		nanos = StressMonitor.sorted(nanos);
+		long[] busy = StressMonitor.sorted(m_Monitor.getBusyPerSecond());
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("device ").append(Build.MODEL).append(", API ").append(Build.VERSION.SDK_INT).append('\n');
+		sb.append("bind ").append(m_Pool ? "pool" : "setters").append(", seconds ").append(m_Seconds)
+				.append(", faces ").append(m_Faces.length).append(", zones ").append(ZONES.length).append('\n');
+		sb.append("recycled binds ").append(m_Measured).append(", without allocation ").append(free).append('\n');
+		if (m_Measured > 0) {
+			sb.append("allocations per bind mean ").append(total / (float) m_Measured)
+					.append(", median ").append(StressMonitor.percentile(allocs, 50))
+					.append(", max ").append(StressMonitor.percentile(allocs, 100)).append('\n');
+			sb.append("bind time median ").append(StressMonitor.percentile(nanos, 50) / 1000)
+					.append("us, p95 ").append(StressMonitor.percentile(nanos, 95) / 1000)
+					.append("us, max ").append(StressMonitor.percentile(nanos, 100) / 1000).append("us\n");
+		}
+		sb.append("main thread per second median ").append(StressMonitor.percentile(busy, 50) / 1000000)
+				.append("ms, p95 ").append(StressMonitor.percentile(busy, 95) / 1000000).append("ms\n");
+		int frames = m_Monitor.getFrames();
+		if (frames >= 0) {
+			int dropped = m_Monitor.getDroppedFrames();
+			sb.append("frames ").append(frames).append(", dropped ").append(dropped).append('\n');
+		} else {
+			sb.append("frames n/a before API 16\n");
+		}
+
+		String report = sb.toString();
+		for (String line : report.split("\n")) {
+			Log.i(TAG, line);
+		}
+		try {
+			Log.i(TAG, "report written to " + write(report));
+		} catch (IOException e) {
+			Log.w(TAG, "cannot write the report", e);
+		}
+	}
+
+	private File write(String report) throws IOException {
+		File dir = getExternalFilesDir(null);
+		if (dir == null) {
+			dir = getFilesDir();
+		}
+		File file = new File(dir, "scroll-" + (m_Pool ? "pool" : "setters") + ".txt");
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			out.write(report);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+}
@@ -0,0 +1,186 @@
+package com.sherchen.realclock;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Message;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.widget.LinearLayout;
+
+/**
+ * A grid of {@link RealAnalogClock3} to see how far the view scales. After
+ * the clocks settled it records the main thread time per second, the
+ * dropped frames and the memory per clock for a while, logs the report and
+ * writes it to the external files directory of the app:
+ * <pre>
+ * adb shell am start -n com.sherchen.realclock/.StressActivity --ei count 200 --es mode sweep [--ez atlas true] [--ei seconds 30]
+ * adb logcat -s StressActivity
+ * </pre>
+ * The mode is "tick" for a 1Hz clock or "sweep" for hands moving every frame.
+ */
+public class StressActivity extends Activity {
+
+	private static final String TAG = "StressActivity";
+
+	static final String EXTRA_COUNT = "count";
+	static final String EXTRA_MODE = "mode";
+	static final String EXTRA_ATLAS = "atlas";
+	static final String EXTRA_SECONDS = "seconds";
+
+	static final String MODE_TICK = "tick";
+	static final String MODE_SWEEP = "sweep";
+
+	private static final int MIN_COUNT = 10;
+	private static final int MAX_COUNT = 500;
+	private static final int DEFAULT_COUNT = 100;
+	private static final int DEFAULT_SECONDS = 30;
+	//the faces are composed in the background, give them time before measuring
+	private static final int SETTLE_DELAY = 3000;
+
+	private static final int MSG_START = 0;
+	private static final int MSG_FINISH = 1;
+
+	private int m_Count;
+	private boolean m_Sweep;
+	private boolean m_Atlas;
+	private int m_Seconds;
+
+	private long m_MemoryBefore;
+	private long m_MemoryAfter;
+	private final StressMonitor m_Monitor = new StressMonitor();
+
+	private final Handler mHandler = new Handler() {
+		@Override
+		public void handleMessage(Message msg) {
+			switch (msg.what) {
+			case MSG_START:
+				m_MemoryAfter = StressMonitor.usedMemory();
+				m_Monitor.start();
+				sendEmptyMessageDelayed(MSG_FINISH, m_Seconds * 1000L);
+				break;
+
+			case MSG_FINISH:
+				m_Monitor.stop();
+				report();
+				break;
+
+			default:
+				break;
+			}
+		}
+	};
+
+	@Override
+	protected void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		m_Count = Math.max(MIN_COUNT, Math.min(MAX_COUNT, getIntent().getIntExtra(EXTRA_COUNT, DEFAULT_COUNT)));
+		m_Sweep = MODE_SWEEP.equals(getIntent().getStringExtra(EXTRA_MODE));
+		m_Atlas = getIntent().getBooleanExtra(EXTRA_ATLAS, false);
+		m_Seconds = Math.max(1, getIntent().getIntExtra(EXTRA_SECONDS, DEFAULT_SECONDS));
+
+		m_MemoryBefore = StressMonitor.usedMemory();
+		setContentView(buildGrid());
+		mHandler.sendEmptyMessageDelayed(MSG_START, SETTLE_DELAY);
+	}
+
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		mHandler.removeMessages(MSG_START);
+		mHandler.removeMessages(MSG_FINISH);
+		m_Monitor.stop();
+	}
+
+	/**
+	 * Rows of equally sized clocks, as many columns as keep them about square.
+	 */
+	private LinearLayout buildGrid() {
+		DisplayMetrics metrics = getResources().getDisplayMetrics();
+		float aspect = (float) metrics.widthPixels / metrics.heightPixels;
+		int columns = Math.max(1, (int) Math.ceil(Math.sqrt(m_Count * aspect)));
+		int rows = (m_Count + columns - 1) / columns;
+
+		LayoutInflater inflater = getLayoutInflater();
+		LinearLayout grid = new LinearLayout(this);
+		grid.setOrientation(LinearLayout.VERTICAL);
+		int added = 0;
+		for (int r = 0; r < rows; r++) {
+			LinearLayout row = new LinearLayout(this);
+			row.setOrientation(LinearLayout.HORIZONTAL);
+			row.setWeightSum(columns);
+			for (int c = 0; c < columns && added < m_Count; c++, added++) {
+				RealAnalogClock3 clock = (RealAnalogClock3) inflater.inflate(R.layout.stress_clock, row, false);
+				clock.setSweepMode(m_Sweep);
+				clock.setAtlasMode(m_Atlas);
+				row.addView(clock);
+			}
+			grid.addView(row, new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, 0, 1.0f));
+		}
+		return grid;
+	}
+
+	private void report() {
+		long[] busy = StressMonitor.sorted(m_Monitor.getBusyPerSecond());
+		long memory = m_MemoryAfter - m_MemoryBefore;
+		long median = StressMonitor.percentile(busy, 50);
+		StringBuilder sb = new StringBuilder();
+		sb.append("device ").append(Build.MODEL).append(", API ").append(Build.VERSION.SDK_INT).append('\n');
+		sb.append("clocks ").append(m_Count).append(", mode ").append(m_Sweep ? MODE_SWEEP : MODE_TICK)
+				.append(", atlas ").append(m_Atlas).append(", seconds ").append(m_Seconds).append('\n');
+		sb.append("memory ").append(memory / 1024).append("KB, per clock ")
+				.append(memory / m_Count / 1024).append("KB\n");
+		sb.append("main thread per second median ").append(median / 1000000)
+				.append("ms, p95 ").append(StressMonitor.percentile(busy, 95) / 1000000)
+				.append("ms, max ").append(StressMonitor.percentile(busy, 100) / 1000000)
+				.append("ms, per clock ").append(median / m_Count / 1000).append("us\n");
+		int frames = m_Monitor.getFrames();
+		if (frames >= 0) {
+			int dropped = m_Monitor.getDroppedFrames();
+			sb.append("frames ").append(frames).append(", dropped ").append(dropped).append(" (")
+					.append(frames + dropped == 0 ? 0 : 100 * dropped / (frames + dropped)).append("%)\n");
+		} else {
+			sb.append("frames n/a before API 16\n");
+		}
+		//the samples in the order they were taken, for charts
+		sb.append("busy ms per second");
+		for (long nanos : m_Monitor.getBusyPerSecond()) {
+			sb.append(',').append(nanos / 1000000);
+		}
+		sb.append('\n');
+
+		String report = sb.toString();
+		for (String line : report.split("\n")) {
+			Log.i(TAG, line);
+		}
+		try {
+			Log.i(TAG, "report written to " + write(report));
+		} catch (IOException e) {
+			Log.w(TAG, "cannot write the report", e);
+		}
+	}
+
+	private File write(String report) throws IOException {
+		File dir = getExternalFilesDir(null);
+		if (dir == null) {
+			dir = getFilesDir();
+		}
+		File file = new File(dir, "stress-" + m_Count + "-" + (m_Sweep ? MODE_SWEEP : MODE_TICK)
+				+ (m_Atlas ? "-atlas" : "") + ".txt");
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			out.write(report);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+}
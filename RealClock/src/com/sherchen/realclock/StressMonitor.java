@@ -0,0 +1,171 @@
+package com.sherchen.realclock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Debug;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Printer;
+import android.view.Choreographer;
+
+/**
+ * Measures what a grid of clocks costs the main thread: the time spent in
+ * its messages per second, the frames dropped and the memory in use. The
+ * busy time comes from the message logging of the main looper, which is
+ * called around every message, so it includes the clocks' handlers and the
+ * traversals drawing them.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+final class StressMonitor {
+
+	private static final long WINDOW_NANOS = 1000000000L;
+	private static final long FRAME_NANOS = 1000000000L / 60;
+
+	private final ArrayList<Long> mBusyPerSecond = new ArrayList<Long>();
+	private long mWindowStart;
+	private long mWindowBusy;
+	private long mDispatchStart;
+
+	private FrameWatcher mFrameWatcher;
+	private boolean mRunning;
+
+	private final Printer mPrinter = new Printer() {
+		@Override
+		public void println(String x) {
+			//">>>>> Dispatching to ..." and "<<<<< Finished to ..."
+			long now = System.nanoTime();
+			if (x.charAt(0) == '>') {
+				mDispatchStart = now;
+			} else if (mDispatchStart != 0) {
+				mWindowBusy += now - mDispatchStart;
+				mDispatchStart = 0;
+				if (now - mWindowStart >= WINDOW_NANOS) {
+					mBusyPerSecond.add(mWindowBusy);
+					mWindowBusy = 0;
+					mWindowStart = now;
+				}
+			}
+		}
+	};
+
+	void start() {
+		if (mRunning) {
+			return;
+		}
+		mRunning = true;
+		mBusyPerSecond.clear();
+		mWindowBusy = 0;
+		mDispatchStart = 0;
+		mWindowStart = System.nanoTime();
+		Looper.getMainLooper().setMessageLogging(mPrinter);
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			mFrameWatcher = new FrameWatcher();
+			mFrameWatcher.start();
+		}
+	}
+
+	void stop() {
+		if (!mRunning) {
+			return;
+		}
+		mRunning = false;
+		Looper.getMainLooper().setMessageLogging(null);
+		if (mFrameWatcher != null) {
+			mFrameWatcher.stop();
+		}
+	}
+
+	/**
+	 * @return the nanoseconds the main thread was busy in each full second
+	 */
+	long[] getBusyPerSecond() {
+		long[] result = new long[mBusyPerSecond.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = mBusyPerSecond.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the frames seen, or -1 before API 16
+	 */
+	int getFrames() {
+		return mFrameWatcher == null ? -1 : mFrameWatcher.mFrames;
+	}
+
+	/**
+	 * @return the vsyncs missed between two frames, or -1 before API 16
+	 */
+	int getDroppedFrames() {
+		return mFrameWatcher == null ? -1 : mFrameWatcher.mDropped;
+	}
+
+	/**
+	 * @return the bytes of the Java and native heap in use after a collection,
+	 * bitmaps live in one of both depending on the release
+	 */
+	static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			runtime.gc();
+			runtime.runFinalization();
+		}
+		SystemClock.sleep(100);
+		return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+	}
+
+	static long percentile(long[] sorted, int percent) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+
+	static long[] sorted(long[] values) {
+		long[] result = values.clone();
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * Counts the frames and the vsyncs missed between them, in a class of its
+	 * own so older releases never load Choreographer.
+	 */
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	private static final class FrameWatcher implements Choreographer.FrameCallback {
+		private long mLastFrame;
+		private int mFrames;
+		private int mDropped;
+		private boolean mStopped;
+
+		void start() {
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+
+		void stop() {
+			mStopped = true;
+			Choreographer.getInstance().removeFrameCallback(this);
+		}
+
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			if (mStopped) {
+				return;
+			}
+			if (mLastFrame != 0) {
+				mFrames++;
+				long missed = (frameTimeNanos - mLastFrame + FRAME_NANOS / 2) / FRAME_NANOS - 1;
+				if (missed > 0) {
+					mDropped += missed;
+				}
+			}
+			mLastFrame = frameTimeNanos;
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+	}
+}
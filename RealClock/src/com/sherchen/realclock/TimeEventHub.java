@@ -0,0 +1,168 @@
+package com.sherchen.realclock;
+
+import java.util.ArrayList;
+import java.util.TimeZone;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.view.View;
+
+/**
+ * One receiver for the time broadcasts of the whole process. The clocks
+ * subscribe here instead of registering their own receiver, the hub is
+ * registered while at least one clock listens and fans every event out
+ * in process. It also tells interested parties when a clock got attached.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+public final class TimeEventHub {
+
+	private static final String TAG = "TimeEventHub";
+
+	/**
+	 * Sent to the time listeners when {@link PowerGovernor#getLevel()} changed.
+	 */
+	public static final String ACTION_TICK_LEVEL_CHANGED = "com.sherchen.realclock.action.TICK_LEVEL_CHANGED";
+
+	public interface TimeListener {
+		/**
+		 * @param action {@link Intent#ACTION_TIME_TICK}, {@link Intent#ACTION_TIME_CHANGED}
+		 * or {@link Intent#ACTION_TIMEZONE_CHANGED}
+		 * @param timeZone the device time zone, resolved once for all listeners
+		 */
+		void onTimeEvent(String action, TimeZone timeZone);
+	}
+
+	public interface OnClockAttachListener {
+		void onClockAttached(View clock);
+	}
+
+	private static TimeEventHub sInstance;
+
+	private final Context mContext;
+	private final ArrayList<TimeListener> mListeners = new ArrayList<TimeListener>();
+	private final ArrayList<OnClockAttachListener> mAttachListeners = new ArrayList<OnClockAttachListener>();
+	//copy of mListeners handed to the dispatch, rebuilt only when a listener comes or goes
+	private TimeListener[] mDispatchList;
+	private boolean mRegistered;
+	private TimeZone mTimeZone;
+	private final PowerGovernor mPowerGovernor;
+
+	private TimeEventHub(Context context) {
+		mContext = context;
+		mPowerGovernor = new PowerGovernor(context, new Runnable() {
+			@Override
+			public void run() {
+				dispatch(ACTION_TICK_LEVEL_CHANGED);
+			}
+		});
+	}
+
+	public static TimeEventHub getInstance(Context context) {
+		if (sInstance == null) {
+			sInstance = new TimeEventHub(context.getApplicationContext());
+		}
+		return sInstance;
+	}
+
+	/**
+	 * @return the device time zone as of the last broadcast
+	 */
+	public TimeZone getTimeZone() {
+		if (mTimeZone == null) {
+			mTimeZone = TimeZone.getDefault();
+		}
+		return mTimeZone;
+	}
+
+	public PowerGovernor getPowerGovernor() {
+		return mPowerGovernor;
+	}
+
+	/**
+	 * @return the level of {@link #getPowerGovernor()}, one of the PowerGovernor.LEVEL_ constants
+	 */
+	public int getTickLevel() {
+		return mPowerGovernor.getLevel();
+	}
+
+	public void subscribe(TimeListener listener) {
+		if (mListeners.contains(listener)) {
+			return;
+		}
+		mListeners.add(listener);
+		mDispatchList = null;
+		if (!mRegistered) {
+			IntentFilter filter = new IntentFilter();
+			filter.addAction(Intent.ACTION_TIME_TICK);
+			filter.addAction(Intent.ACTION_TIME_CHANGED);
+			filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+			mContext.registerReceiver(mIntentReceiver, filter);
+			mRegistered = true;
+			// The time zone may have changed while the receiver wasn't registered
+			mTimeZone = null;
+			mPowerGovernor.start();
+		}
+	}
+
+	public void unsubscribe(TimeListener listener) {
+		if (!mListeners.remove(listener)) {
+			return;
+		}
+		mDispatchList = null;
+		if (mListeners.isEmpty() && mRegistered) {
+			mContext.unregisterReceiver(mIntentReceiver);
+			mRegistered = false;
+			mPowerGovernor.stop();
+		}
+	}
+
+	//--------------------------------------------------------
+	public void addOnClockAttachListener(OnClockAttachListener listener) {
+		if (!mAttachListeners.contains(listener)) {
+			mAttachListeners.add(listener);
+		}
+	}
+
+	public void removeOnClockAttachListener(OnClockAttachListener listener) {
+		mAttachListeners.remove(listener);
+	}
+
+	/**
+	 * Called by the clocks from onAttachedToWindow, replaces the old
+	 * com.sherchen.clockui.attach_container broadcast.
+	 */
+	void notifyClockAttached(View clock) {
+		for (int i = mAttachListeners.size() - 1; i >= 0; i--) {
+			mAttachListeners.get(i).onClockAttached(clock);
+		}
+	}
+
+	private final BroadcastReceiver mIntentReceiver = new BroadcastReceiver() {
+		@Override
+		public void onReceive(Context context, Intent intent) {
+			String action = intent.getAction();
+			if (action.equals(Intent.ACTION_TIMEZONE_CHANGED)) {
+				String tz = intent.getStringExtra("time-zone");
+				mTimeZone = tz == null ? TimeZone.getDefault() : TimeZone.getTimeZone(tz);
+				android.util.Log.v(TAG, "time zone is " + mTimeZone.getID());
+			}
+			dispatch(action);
+		}
+	};
+
+	private void dispatch(String action) {
+		final TimeZone timeZone = getTimeZone();
+
+		TimeListener[] listeners = mDispatchList;
+		if (listeners == null) {
+			listeners = mListeners.toArray(new TimeListener[mListeners.size()]);
+			mDispatchList = listeners;
+		}
+		for (TimeListener listener : listeners) {
+			listener.onTimeEvent(action, timeZone);
+		}
+	}
+}
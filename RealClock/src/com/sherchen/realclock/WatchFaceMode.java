@@ -0,0 +1,84 @@
+package com.sherchen.realclock;
+
+/**
+ * The decisions of a {@link WatchFaceRenderer} which need no canvas: the
+ * mode for the state of the display, what each mode draws, when the next
+ * frame is due and where burn-in protection moves the face. Plain Java, so
+ * it is tested on the JVM.
+ */
+final class WatchFaceMode {
+
+	static final int INTERACTIVE = 0;
+	static final int AMBIENT = 1;
+	static final int LOW_BIT = 2;
+	static final int BURN_IN = 3;
+	static final int COUNT = 4;
+
+	static final int ONESECOND = 1000;
+	static final int ONEMINUTE = 60 * ONESECOND;
+
+	//the shift of each minute, in units of the largest shift, a walk around the center
+	private static final int[] SHIFT_X = { 0, 1, 1, 0, -1, -1, -1, 0, 1 };
+	private static final int[] SHIFT_Y = { 0, 0, 1, 1, 1, 0, -1, -1, -1 };
+
+	private WatchFaceMode() {
+	}
+
+	/**
+	 * Burn-in protection wins over low-bit, its mode draws the hands only
+	 * and in white on a low-bit display anyway.
+	 */
+	static int select(boolean ambient, boolean lowBit, boolean burnInProtection) {
+		if (!ambient) {
+			return INTERACTIVE;
+		} else if (burnInProtection) {
+			return BURN_IN;
+		} else if (lowBit) {
+			return LOW_BIT;
+		}
+		return AMBIENT;
+	}
+
+	/**
+	 * The large bright areas of the dial burn in, and turn into a white disc
+	 * through the low-bit filter.
+	 */
+	static boolean showsDial(int mode) {
+		return mode == INTERACTIVE || mode == AMBIENT;
+	}
+
+	static boolean showsSeconds(int mode) {
+		return mode == INTERACTIVE;
+	}
+
+	/**
+	 * @return the milliseconds from now until the next frame is due, on the
+	 * second or on the minute
+	 */
+	static long getNextFrameDelay(int mode, boolean secondHand, long now) {
+		long period = mode == INTERACTIVE && secondHand ? ONESECOND : ONEMINUTE;
+		return period - now % period;
+	}
+
+	/**
+	 * @return the step of the burn-in walk for the time, a new one every minute
+	 */
+	static int getShiftStep(long now) {
+		return (int) (now / ONEMINUTE % SHIFT_X.length);
+	}
+
+	/**
+	 * @return -1, 0 or 1 times the largest shift
+	 */
+	static int getShiftX(int step) {
+		return SHIFT_X[step];
+	}
+
+	static int getShiftY(int step) {
+		return SHIFT_Y[step];
+	}
+
+	static int getShiftSteps() {
+		return SHIFT_X.length;
+	}
+}
@@ -0,0 +1,186 @@
+package com.sherchen.realclock;
+
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+
+/**
+ * Draws a clock face the way an always-on watch face needs it, on top of
+ * the cached layer of a {@link ClockFace}:
+ * <ul>
+ * <li>interactive, the full face ticking once a second,</li>
+ * <li>ambient, once a minute without the second hand and with the dial
+ * dimmed to gray,</li>
+ * <li>low-bit ambient, only the hands in white on black without
+ * filtering for displays with few colors,</li>
+ * <li>burn-in protection in ambient, no dial and the hands moved by a few
+ * pixels every minute.</li>
+ * </ul>
+ * The time each mode takes to draw a frame is measured, see
+ * {@link #getFrameNanos(int)}. Which mode applies and what it draws is
+ * decided by {@link WatchFaceMode}.
+ * <p>
+ * Not thread safe, to be used on one thread like ClockFace.
+ */
+public final class WatchFaceRenderer {
+
+	public static final int MODE_INTERACTIVE = WatchFaceMode.INTERACTIVE;
+	public static final int MODE_AMBIENT = WatchFaceMode.AMBIENT;
+	public static final int MODE_LOW_BIT = WatchFaceMode.LOW_BIT;
+	public static final int MODE_BURN_IN = WatchFaceMode.BURN_IN;
+
+	//the largest shift of the burn-in protection, in dp
+	private static final float BURN_IN_SHIFT = 4.0f;
+
+	private final ClockFace mFace;
+	private final float mBurnInShift;
+	private final ColorMatrixColorFilter mAmbientFilter;
+	private final ColorMatrixColorFilter mLowBitFilter;
+
+	private boolean mAmbient;
+	private boolean mLowBit;
+	private boolean mBurnInProtection;
+	private int mMode = -1;
+	private int mWidth;
+	private int mHeight;
+
+	private final long[] mFrameNanos = new long[WatchFaceMode.COUNT];
+	private final int[] mFrames = new int[WatchFaceMode.COUNT];
+
+	public WatchFaceRenderer(Resources res, FaceConfig config) {
+		mFace = new ClockFace(res, config);
+		mBurnInShift = BURN_IN_SHIFT * res.getDisplayMetrics().density;
+
+		ColorMatrix gray = new ColorMatrix();
+		gray.setSaturation(0);
+		//and a bit darker than the interactive face
+		ColorMatrix dim = new ColorMatrix(new float[] {
+			0.6f, 0, 0, 0, 0,
+			0, 0.6f, 0, 0, 0,
+			0, 0, 0.6f, 0, 0,
+			0, 0, 0, 1, 0,
+		});
+		gray.postConcat(dim);
+		mAmbientFilter = new ColorMatrixColorFilter(gray);
+		//every pixel white, the alpha pushed to about on or off
+		mLowBitFilter = new ColorMatrixColorFilter(new float[] {
+			0, 0, 0, 0, 255,
+			0, 0, 0, 0, 255,
+			0, 0, 0, 0, 255,
+			0, 0, 0, 8, -4 * 255,
+		});
+		updateMode();
+	}
+
+	public ClockFace getFace() {
+		return mFace;
+	}
+
+	public void setAmbient(boolean ambient) {
+		mAmbient = ambient;
+		updateMode();
+	}
+
+	public boolean isAmbient() {
+		return mAmbient;
+	}
+
+	/**
+	 * @param lowBit the display shows only a few colors in ambient mode
+	 */
+	public void setLowBitAmbient(boolean lowBit) {
+		mLowBit = lowBit;
+		updateMode();
+	}
+
+	/**
+	 * @param protect the display may burn in, keep ambient frames dark and moving
+	 */
+	public void setBurnInProtection(boolean protect) {
+		mBurnInProtection = protect;
+		updateMode();
+	}
+
+	/**
+	 * @return one of the MODE_ constants
+	 */
+	public int getMode() {
+		return mMode;
+	}
+
+	public void setSize(int width, int height) {
+		mWidth = width;
+		mHeight = height;
+		//a square face in the middle, leaving room for the burn-in shift
+		int size = Math.max(0, Math.min(width, height) - 2 * (int) Math.ceil(mBurnInShift));
+		mFace.setSize(size, size);
+	}
+
+	/**
+	 * @return the milliseconds until the next frame is due
+	 */
+	public long getNextFrameDelay(long now) {
+		return WatchFaceMode.getNextFrameDelay(mMode, mFace.hasSecondHand(), now);
+	}
+
+	public void draw(Canvas canvas, long now) {
+		long start = System.nanoTime();
+		canvas.drawColor(Color.BLACK);
+		int count = canvas.save();
+		float left = (mWidth - mFace.getWidth()) / 2;
+		float top = (mHeight - mFace.getHeight()) / 2;
+		if (mMode == MODE_BURN_IN) {
+			int step = WatchFaceMode.getShiftStep(now);
+			left += WatchFaceMode.getShiftX(step) * mBurnInShift;
+			top += WatchFaceMode.getShiftY(step) * mBurnInShift;
+		}
+		canvas.translate(left, top);
+		if (WatchFaceMode.showsDial(mMode)) {
+			mFace.drawDial(canvas);
+		}
+		mFace.drawHands(canvas, now);
+		canvas.restoreToCount(count);
+		mFrameNanos[mMode] += System.nanoTime() - start;
+		mFrames[mMode]++;
+	}
+
+	/**
+	 * The time spent in {@link #draw}. On a software canvas that is the whole
+	 * cost of the frame. On a hardware accelerated canvas, e.g. the one a
+	 * view gets in onDraw, draw only records the operations into a display
+	 * list, the rasterizing on the render thread or GPU is not part of it.
+	 * For that cost use "adb shell dumpsys gfxinfo", see ClockBenchmark.
+	 * @return the mean time a frame of the mode took to draw, 0 if none was drawn
+	 */
+	public long getFrameNanos(int mode) {
+		return mFrames[mode] == 0 ? 0 : mFrameNanos[mode] / mFrames[mode];
+	}
+
+	public int getFrameCount(int mode) {
+		return mFrames[mode];
+	}
+
+	public void release() {
+		mFace.release();
+	}
+
+	private void updateMode() {
+		int mode = WatchFaceMode.select(mAmbient, mLowBit, mBurnInProtection);
+		//low-bit may change within the burn-in mode, the paints are set again anyway
+		mMode = mode;
+		mFace.setShowSeconds(WatchFaceMode.showsSeconds(mode));
+		if (mode == MODE_INTERACTIVE) {
+			mFace.setColorFilter(null);
+			mFace.setFilterBitmap(true);
+		} else if (mode == MODE_AMBIENT) {
+			mFace.setColorFilter(mAmbientFilter);
+			mFace.setFilterBitmap(true);
+		} else {
+			//hands only, in white for low-bit and gray otherwise
+			mFace.setColorFilter(mLowBit ? mLowBitFilter : mAmbientFilter);
+			mFace.setFilterBitmap(!mLowBit);
+		}
+	}
+}
@@ -0,0 +1,306 @@
+package com.sherchen.realclock;
+
+import java.util.TimeZone;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+
+/**
+ * The other time zones of a clock: a 24 hour GMT hand turning once a day
+ * around the center, and up to three sub-dials with the hours and minutes
+ * of a zone each, at 6, 9 and 3 o'clock. The latter two are the places of
+ * the {@link Chronograph}, while it is shown only the first one is free.
+ * All of them are brought to the time the clock read for
+ * its own hands, a zone only adds the lookup of its cached offset. The
+ * offsets are the shared ones of the {@link FacePool}, the rings of the
+ * sub-dials are rendered once per size.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+final class ZoneDials {
+
+	static final int MAX_SUB_DIALS = 3;
+	//only the one at 6 o'clock is left beside the chronograph
+	static final int CHRONOGRAPH_SUB_DIALS = 1;
+
+	private static final long MINUTE_MILLIS = 60 * 1000L;
+	private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+	private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+	//of the radius of the clock
+	private static final float GMT_LENGTH = 0.85f;
+	private static final float GMT_TIP = 0.06f;
+	//the places of the sub-dials, clockwise from 12 o'clock
+	private static final int[] SUB_DIAL_DEGREES = { 180, 270, 90 };
+
+	private boolean mGmtHand;
+	private String mGmtZoneId;
+	private ZoneOffsetCache mGmtZone;
+	private float mGmtDegrees;
+
+	private int mCount;
+	//the places at 9 and 3 o'clock are taken by the chronograph
+	private boolean mChronograph;
+	private final String[] mZoneIds = new String[MAX_SUB_DIALS];
+	private final ZoneOffsetCache[] mZones = new ZoneOffsetCache[MAX_SUB_DIALS];
+	private final String[] mLabels = new String[MAX_SUB_DIALS];
+	private final float[] mHourDegrees = new float[MAX_SUB_DIALS];
+	private final float[] mMinuteDegrees = new float[MAX_SUB_DIALS];
+
+	private final Paint mFacePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+	private final Paint mHandPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+	private final Paint mGmtPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+	private final Paint mLabelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+	private final Path mGmtPath = new Path();
+
+	private final Rect[] mDials = new Rect[MAX_SUB_DIALS];
+	private final Bitmap[] mFaces = new Bitmap[MAX_SUB_DIALS];
+	private int mRadius;
+	private int mCenterX;
+	private int mCenterY;
+	private int mClockRadius;
+
+	ZoneDials() {
+		for (int i = 0; i < MAX_SUB_DIALS; i++) {
+			mDials[i] = new Rect();
+		}
+		mFacePaint.setStyle(Paint.Style.STROKE);
+		mHandPaint.setStyle(Paint.Style.STROKE);
+		mHandPaint.setStrokeCap(Paint.Cap.ROUND);
+		mGmtPaint.setStrokeCap(Paint.Cap.ROUND);
+		mLabelPaint.setTextAlign(Paint.Align.CENTER);
+		setColors(0xff000000, 0xff1565c0);
+	}
+
+	void setColors(int faceColor, int gmtColor) {
+		mFacePaint.setColor(faceColor);
+		mHandPaint.setColor(faceColor);
+		mLabelPaint.setColor(faceColor);
+		mGmtPaint.setColor(gmtColor);
+		release();
+	}
+
+	/**
+	 * @param zoneId the zone of the GMT hand, null for the device time zone
+	 */
+	void setGmtHand(String zoneId, TimeZone deviceZone) {
+		mGmtHand = true;
+		mGmtZoneId = zoneId;
+		mGmtZone = FacePool.getInstance().getZoneOffset(zoneId, deviceZone);
+	}
+
+	void hideGmtHand() {
+		mGmtHand = false;
+		mGmtZone = null;
+	}
+
+	boolean hasGmtHand() {
+		return mGmtHand;
+	}
+
+	/**
+	 * @param zoneId the zone of the sub-dial, null for the device time zone
+	 * @return false if all free places are taken
+	 */
+	boolean addZone(String zoneId, TimeZone deviceZone) {
+		if (mCount == getCapacity()) {
+			return false;
+		}
+		mZoneIds[mCount] = zoneId;
+		mZones[mCount] = FacePool.getInstance().getZoneOffset(zoneId, deviceZone);
+		mLabels[mCount] = label(zoneId);
+		mCount++;
+		return true;
+	}
+
+	void clearZones() {
+		release();
+		for (int i = 0; i < mCount; i++) {
+			mZoneIds[i] = null;
+			mZones[i] = null;
+			mLabels[i] = null;
+		}
+		mCount = 0;
+	}
+
+	int getZoneCount() {
+		return mCount;
+	}
+
+	/**
+	 * @return false if sub-dials already take the places of the chronograph
+	 */
+	boolean setChronograph(boolean shown) {
+		if (shown && mCount > CHRONOGRAPH_SUB_DIALS) {
+			return false;
+		}
+		mChronograph = shown;
+		return true;
+	}
+
+	/**
+	 * @return how many sub-dials may be shown, with or without the chronograph
+	 */
+	int getCapacity() {
+		return mChronograph ? CHRONOGRAPH_SUB_DIALS : MAX_SUB_DIALS;
+	}
+
+	boolean isEmpty() {
+		return !mGmtHand && mCount == 0;
+	}
+
+	/**
+	 * "America/New_York" is shown as "New York", the device zone as nothing.
+	 */
+	private static String label(String zoneId) {
+		if (zoneId == null) {
+			return "";
+		}
+		return zoneId.substring(zoneId.lastIndexOf('/') + 1).replace('_', ' ');
+	}
+
+	/**
+	 * The device zone changed, the zones following it take the new one.
+	 */
+	void onDeviceZoneChanged(TimeZone deviceZone) {
+		//the caches are shared, a cache is only set once for all clocks
+		if (mGmtHand && mGmtZoneId == null && mGmtZone.getTimeZone() != deviceZone) {
+			mGmtZone.setTimeZone(deviceZone);
+		}
+		for (int i = 0; i < mCount; i++) {
+			if (mZoneIds[i] == null && mZones[i].getTimeZone() != deviceZone) {
+				mZones[i].setTimeZone(deviceZone);
+			}
+		}
+	}
+
+	/**
+	 * The wall clock was set, forget the cached offsets.
+	 */
+	void onTimeChanged() {
+		if (mGmtHand) {
+			mGmtZone.invalidate();
+		}
+		for (int i = 0; i < mCount; i++) {
+			mZones[i].invalidate();
+		}
+	}
+
+	void setSize(int width, int height) {
+		mCenterX = width / 2;
+		mCenterY = height / 2;
+		mClockRadius = Math.min(mCenterX, mCenterY);
+		int distance = (int) (mClockRadius * Chronograph.SUB_DIAL_DISTANCE);
+		int radius = Math.max(1, (int) (mClockRadius * Chronograph.SUB_DIAL_RADIUS));
+		if (radius != mRadius) {
+			release();
+			mRadius = radius;
+		}
+		for (int i = 0; i < MAX_SUB_DIALS; i++) {
+			double radians = Math.toRadians(SUB_DIAL_DEGREES[i]);
+			int x = mCenterX + (int) Math.round(Math.sin(radians) * distance);
+			int y = mCenterY - (int) Math.round(Math.cos(radians) * distance);
+			mDials[i].set(x - radius, y - radius, x + radius, y + radius);
+		}
+	}
+
+	/**
+	 * Bring the hands to the time the clock read for this tick.
+	 */
+	void update(long now) {
+		if (mGmtHand) {
+			long local = now + mGmtZone.getOffset(now);
+			mGmtDegrees = (local % DAY_MILLIS / MINUTE_MILLIS) * (360.0f / (24 * 60));
+		}
+		for (int i = 0; i < mCount; i++) {
+			long local = now + mZones[i].getOffset(now);
+			//the sub-dials show minutes, like the hands of the clock without the seconds
+			long minutes = local / MINUTE_MILLIS % (12 * 60);
+			mMinuteDegrees[i] = ClockHands.minuteDegrees(minutes % 60);
+			mHourDegrees[i] = ClockHands.hourDegrees(minutes / 60.0f);
+		}
+	}
+
+	/**
+	 * Draw the sub-dials and the GMT hand, under the hands of the clock.
+	 */
+	void draw(Canvas canvas) {
+		if (mRadius <= 0) {
+			return;
+		}
+		for (int i = 0; i < mCount; i++) {
+			if (mFaces[i] == null) {
+				mFaces[i] = renderFace(mLabels[i]);
+			}
+			Rect dial = mDials[i];
+			canvas.drawBitmap(mFaces[i], dial.left, dial.top, null);
+			drawHand(canvas, dial, mHourDegrees[i], 0.5f);
+			drawHand(canvas, dial, mMinuteDegrees[i], 0.8f);
+		}
+		if (mGmtHand) {
+			drawGmtHand(canvas);
+		}
+	}
+
+	void release() {
+		//only dropped, the display list of the clock may still point to the faces
+		for (int i = 0; i < MAX_SUB_DIALS; i++) {
+			mFaces[i] = null;
+		}
+	}
+
+	private void drawHand(Canvas canvas, Rect dial, float degrees, float length) {
+		mHandPaint.setStrokeWidth(Math.max(1.0f, mRadius * 0.08f));
+		double radians = Math.toRadians(degrees);
+		float cx = dial.exactCenterX();
+		float cy = dial.exactCenterY();
+		canvas.drawLine(cx, cy, cx + (float) Math.sin(radians) * mRadius * length,
+				cy - (float) Math.cos(radians) * mRadius * length, mHandPaint);
+	}
+
+	/**
+	 * A thin hand with a triangle at its tip, rotated like the hands of the clock.
+	 */
+	private void drawGmtHand(Canvas canvas) {
+		float length = mClockRadius * GMT_LENGTH;
+		float tip = mClockRadius * GMT_TIP;
+		mGmtPaint.setStrokeWidth(Math.max(1.0f, mClockRadius * 0.015f));
+		canvas.save();
+		canvas.rotate(mGmtDegrees, mCenterX, mCenterY);
+		canvas.drawLine(mCenterX, mCenterY, mCenterX, mCenterY - length + tip, mGmtPaint);
+		mGmtPath.reset();
+		mGmtPath.moveTo(mCenterX, mCenterY - length);
+		mGmtPath.lineTo(mCenterX - tip / 2, mCenterY - length + tip);
+		mGmtPath.lineTo(mCenterX + tip / 2, mCenterY - length + tip);
+		mGmtPath.close();
+		canvas.drawPath(mGmtPath, mGmtPaint);
+		canvas.restore();
+	}
+
+	/**
+	 * A ring with 12 marks and the name of the zone under the center.
+	 */
+	private Bitmap renderFace(String label) {
+		int size = mRadius * 2;
+		Bitmap face = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+		Canvas canvas = new Canvas(face);
+		float stroke = Math.max(1.0f, mRadius * 0.04f);
+		mFacePaint.setStrokeWidth(stroke);
+		canvas.drawCircle(mRadius, mRadius, mRadius - stroke, mFacePaint);
+		for (int i = 0; i < 12; i++) {
+			float inner = mRadius * (i % 3 == 0 ? 0.7f : 0.82f);
+			double radians = Math.toRadians(i * 30);
+			float sin = (float) Math.sin(radians);
+			float cos = (float) Math.cos(radians);
+			canvas.drawLine(mRadius + sin * inner, mRadius - cos * inner,
+					mRadius + sin * (mRadius - stroke), mRadius - cos * (mRadius - stroke), mFacePaint);
+		}
+		if (label.length() > 0) {
+			mLabelPaint.setTextSize(mRadius * 0.22f);
+			canvas.drawText(label, mRadius, mRadius * 1.5f, mLabelPaint);
+		}
+		return face;
+	}
+}
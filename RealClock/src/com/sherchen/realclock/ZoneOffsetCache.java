@@ -0,0 +1,90 @@
+package com.sherchen.realclock;
+
+import java.util.TimeZone;
+
+/**
+ * Keeps the UTC offset of a time zone together with the window in which that
+ * offset stays valid. The next transition is found once, so each tick only
+ * compares the current time against the window instead of asking the zone.
+ */
+final class ZoneOffsetCache {
+
+	private static final long ONE_MINUTE = 60 * 1000L;
+	private static final long ONE_DAY = 24 * 60 * ONE_MINUTE;
+	//zones without DST never find a transition, so stop looking after a year
+	private static final long SCAN_LIMIT = 366 * ONE_DAY;
+
+	private TimeZone m_TimeZone;
+	private int m_Offset;
+	private long m_ValidFrom;
+	private long m_ValidUntil;
+
+	ZoneOffsetCache(TimeZone timeZone) {
+		setTimeZone(timeZone);
+	}
+
+	void setTimeZone(TimeZone timeZone) {
+		m_TimeZone = timeZone;
+		invalidate();
+	}
+
+	TimeZone getTimeZone() {
+		return m_TimeZone;
+	}
+
+	/**
+	 * Forget the cached window, e.g. after the system clock was set.
+	 */
+	void invalidate() {
+		m_ValidFrom = Long.MAX_VALUE;
+		m_ValidUntil = Long.MIN_VALUE;
+	}
+
+	/**
+	 * @param millis UTC time in milliseconds
+	 * @return the offset of the zone at that time in milliseconds
+	 */
+	int getOffset(long millis) {
+		if (millis < m_ValidFrom || millis >= m_ValidUntil) {
+			recompute(millis);
+		}
+		return m_Offset;
+	}
+
+	/**
+	 * @return the first instant at which the cached offset is no longer valid
+	 */
+	long getNextTransition() {
+		return m_ValidUntil;
+	}
+
+	private void recompute(long millis) {
+		final TimeZone tz = m_TimeZone;
+		final int offset = tz.getOffset(millis);
+
+		//walk forward a day at a time until the offset changes
+		long lo = millis;
+		long hi = millis + ONE_DAY;
+		while (hi - millis <= SCAN_LIMIT && tz.getOffset(hi) == offset) {
+			lo = hi;
+			hi += ONE_DAY;
+		}
+
+		if (hi - millis > SCAN_LIMIT) {
+			m_ValidUntil = lo;
+		} else {
+			//the transition lies in (lo, hi], narrow it down to the millisecond
+			while (hi - lo > 1) {
+				long mid = lo + (hi - lo) / 2;
+				if (tz.getOffset(mid) == offset) {
+					lo = mid;
+				} else {
+					hi = mid;
+				}
+			}
+			m_ValidUntil = hi;
+		}
+		m_ValidFrom = millis;
+		m_Offset = offset;
+	}
+}
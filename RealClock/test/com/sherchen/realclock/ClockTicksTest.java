@@ -0,0 +1,90 @@
+package com.sherchen.realclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ClockTicksTest {
+
+	@Test
+	public void sweepTicksEveryFrame() {
+		ClockTicks ticks = new ClockTicks();
+		ticks.setSweep(true);
+		assertTrue(ticks.sweeps());
+		assertEquals(ClockTicks.SWEEP_FRAME_DELAY, ticks.getNextFrameDelay(60750));
+	}
+
+	@Test
+	public void tickLevelTicksOnTheSecondEvenWithSweep() {
+		ClockTicks ticks = new ClockTicks();
+		ticks.setSweep(true);
+		ticks.setLevel(PowerGovernor.LEVEL_TICK);
+		//the face must not place the second hand between the marks
+		assertFalse(ticks.sweeps());
+		assertTrue(ticks.showsSeconds());
+		assertEquals(1000, ticks.getNextFrameDelay(60000));
+		assertEquals(250, ticks.getNextFrameDelay(60750));
+	}
+
+	@Test
+	public void withoutSweepTicksOnTheSecond() {
+		ClockTicks ticks = new ClockTicks();
+		assertFalse(ticks.sweeps());
+		assertEquals(250, ticks.getNextFrameDelay(60750));
+	}
+
+	@Test
+	public void minuteLevelTicksOnTheMinuteWithoutSeconds() {
+		ClockTicks ticks = new ClockTicks();
+		ticks.setSweep(true);
+		ticks.setLevel(PowerGovernor.LEVEL_MINUTE);
+		assertFalse(ticks.sweeps());
+		assertFalse(ticks.showsSeconds());
+		assertEquals(1, ticks.getNextFrameDelay(119999));
+		assertEquals(60000, ticks.getNextFrameDelay(120000));
+	}
+
+	@Test
+	public void levelBackToSweepSweepsAgain() {
+		ClockTicks ticks = new ClockTicks();
+		ticks.setSweep(true);
+		ticks.setLevel(PowerGovernor.LEVEL_MINUTE);
+		ticks.setLevel(PowerGovernor.LEVEL_SWEEP);
+		assertTrue(ticks.sweeps());
+	}
+
+	@Test
+	public void ticksNeverCompose() {
+		ClockTicks ticks = new ClockTicks();
+		ticks.setSweep(true);
+		assertTrue(ticks.setSize(320, 320));
+		//an hour of sweep frames, the bounds set again as a parent may do on layout
+		long now = 0;
+		for (int i = 0; i < 3600 * 60; i++) {
+			now += ticks.getNextFrameDelay(now);
+			assertFalse(ticks.setSize(320, 320));
+		}
+		assertEquals(1, ticks.getCompositions());
+	}
+
+	@Test
+	public void dialComposedOncePerSize() {
+		ClockTicks ticks = new ClockTicks();
+		ticks.setSize(320, 320);
+		ticks.setSize(320, 320);
+		assertEquals(1, ticks.getCompositions());
+		assertTrue(ticks.setSize(480, 320));
+		assertFalse(ticks.setSize(480, 320));
+		assertEquals(2, ticks.getCompositions());
+	}
+
+	@Test
+	public void emptySizeComposesNothing() {
+		ClockTicks ticks = new ClockTicks();
+		assertFalse(ticks.setSize(0, 0));
+		assertTrue(ticks.setSize(0, 320));
+		assertEquals(0, ticks.getCompositions());
+	}
+}
@@ -0,0 +1,86 @@
+package com.sherchen.realclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class WatchFaceModeTest {
+
+	@Test
+	public void interactiveWheneverNotAmbient() {
+		assertEquals(WatchFaceMode.INTERACTIVE, WatchFaceMode.select(false, false, false));
+		assertEquals(WatchFaceMode.INTERACTIVE, WatchFaceMode.select(false, true, true));
+	}
+
+	@Test
+	public void burnInProtectionWinsOverLowBit() {
+		assertEquals(WatchFaceMode.AMBIENT, WatchFaceMode.select(true, false, false));
+		assertEquals(WatchFaceMode.LOW_BIT, WatchFaceMode.select(true, true, false));
+		assertEquals(WatchFaceMode.BURN_IN, WatchFaceMode.select(true, false, true));
+		assertEquals(WatchFaceMode.BURN_IN, WatchFaceMode.select(true, true, true));
+	}
+
+	@Test
+	public void onlyInteractiveAndAmbientShowTheDial() {
+		assertTrue(WatchFaceMode.showsDial(WatchFaceMode.INTERACTIVE));
+		assertTrue(WatchFaceMode.showsDial(WatchFaceMode.AMBIENT));
+		assertFalse(WatchFaceMode.showsDial(WatchFaceMode.LOW_BIT));
+		assertFalse(WatchFaceMode.showsDial(WatchFaceMode.BURN_IN));
+	}
+
+	@Test
+	public void onlyInteractiveShowsSeconds() {
+		assertTrue(WatchFaceMode.showsSeconds(WatchFaceMode.INTERACTIVE));
+		for (int mode = WatchFaceMode.AMBIENT; mode < WatchFaceMode.COUNT; mode++) {
+			assertFalse(WatchFaceMode.showsSeconds(mode));
+		}
+	}
+
+	@Test
+	public void interactiveFramesComeOnTheSecond() {
+		assertEquals(1000, WatchFaceMode.getNextFrameDelay(WatchFaceMode.INTERACTIVE, true, 60000));
+		assertEquals(250, WatchFaceMode.getNextFrameDelay(WatchFaceMode.INTERACTIVE, true, 60750));
+	}
+
+	@Test
+	public void otherFramesComeOnTheMinute() {
+		//without a second hand the interactive face only changes with the minute
+		assertEquals(59250, WatchFaceMode.getNextFrameDelay(WatchFaceMode.INTERACTIVE, false, 60750));
+		for (int mode = WatchFaceMode.AMBIENT; mode < WatchFaceMode.COUNT; mode++) {
+			assertEquals(1, WatchFaceMode.getNextFrameDelay(mode, true, 119999));
+			assertEquals(60000, WatchFaceMode.getNextFrameDelay(mode, true, 120000));
+		}
+	}
+
+	@Test
+	public void shiftStepChangesOnceAMinute() {
+		assertEquals(0, WatchFaceMode.getShiftStep(0));
+		assertEquals(0, WatchFaceMode.getShiftStep(59999));
+		assertEquals(1, WatchFaceMode.getShiftStep(60000));
+		int steps = WatchFaceMode.getShiftSteps();
+		assertEquals(0, WatchFaceMode.getShiftStep(steps * 60000L));
+		assertEquals(steps - 1, WatchFaceMode.getShiftStep(steps * 60000L - 1));
+	}
+
+	@Test
+	public void shiftVisitsEveryOffsetOnceAndStepsByOne() {
+		int steps = WatchFaceMode.getShiftSteps();
+		Set<Integer> seen = new HashSet<Integer>();
+		for (int step = 0; step < steps; step++) {
+			int x = WatchFaceMode.getShiftX(step);
+			int y = WatchFaceMode.getShiftY(step);
+			assertTrue(Math.abs(x) <= 1 && Math.abs(y) <= 1);
+			assertTrue("offset twice at step " + step, seen.add(x * 3 + y));
+			//no jump across the face from one minute to the next, the walk wraps too
+			int next = (step + 1) % steps;
+			assertTrue(Math.abs(WatchFaceMode.getShiftX(next) - x) <= 1);
+			assertTrue(Math.abs(WatchFaceMode.getShiftY(next) - y) <= 1);
+		}
+		assertEquals(9, seen.size());
+	}
+}
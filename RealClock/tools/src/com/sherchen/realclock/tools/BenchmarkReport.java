@@ -0,0 +1,213 @@
+package com.sherchen.realclock.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Turns the raw output of the device into numbers: the launch time of
+ * "am start -W" and the frame times of "dumpsys gfxinfo". Needs no device,
+ * so saved outputs can be reported on any host:
+ * <pre>
+ * java com.sherchen.realclock.tools.BenchmarkReport start-1.txt gfxinfo.txt ...
+ * </pre>
+ */
+public class BenchmarkReport {
+
+	//one frame at 60Hz
+	static final double JANK_MILLIS = 1000.0 / 60;
+
+	private final List<Double> mStartups = new ArrayList<Double>();
+	private final List<Double> mFrames = new ArrayList<Double>();
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("usage: BenchmarkReport <am start -W or dumpsys gfxinfo output>...");
+			System.exit(1);
+		}
+		BenchmarkReport report = new BenchmarkReport();
+		for (String arg : args) {
+			report.add(read(new File(arg)));
+		}
+		report.print("report", System.out);
+	}
+
+	/**
+	 * Add whatever the output contains, a launch time or frame times.
+	 */
+	public void add(String output) {
+		double startup = parseStartup(output);
+		if (startup >= 0) {
+			mStartups.add(startup);
+		}
+		mFrames.addAll(parseFrames(output));
+	}
+
+	public int getStartupCount() {
+		return mStartups.size();
+	}
+
+	public int getFrameCount() {
+		return mFrames.size();
+	}
+
+	public void print(String scenario, PrintStream out) {
+		if (!mStartups.isEmpty()) {
+			double[] startups = sorted(mStartups);
+			out.println(scenario + " startup runs=" + startups.length
+					+ " median=" + format(percentile(startups, 50))
+					+ "ms min=" + format(startups[0])
+					+ "ms max=" + format(startups[startups.length - 1]) + "ms");
+		}
+		if (!mFrames.isEmpty()) {
+			double[] frames = sorted(mFrames);
+			int janky = 0;
+			for (double frame : frames) {
+				if (frame > JANK_MILLIS) {
+					janky++;
+				}
+			}
+			out.println(scenario + " frames count=" + frames.length
+					+ " p50=" + format(percentile(frames, 50))
+					+ "ms p90=" + format(percentile(frames, 90))
+					+ "ms p95=" + format(percentile(frames, 95))
+					+ "ms p99=" + format(percentile(frames, 99))
+					+ "ms janky=" + janky + " (" + format(100.0 * janky / frames.length) + "%)");
+		}
+		if (mStartups.isEmpty() && mFrames.isEmpty()) {
+			out.println(scenario + " no data");
+		}
+	}
+
+	/**
+	 * @return the TotalTime of "am start -W" in ms, or -1 if there is none
+	 */
+	static double parseStartup(String output) {
+		for (String line : output.split("\n")) {
+			line = line.trim();
+			if (line.startsWith("TotalTime:")) {
+				return Double.parseDouble(line.substring("TotalTime:".length()).trim());
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Frame times in ms. "dumpsys gfxinfo &lt;package&gt; framestats" of API 23
+	 * and later gives one row per frame from the intended vsync to the
+	 * completion, older releases with debug.hwui.profile=true give the
+	 * draw, process and execute times of the last frames.
+	 */
+	static List<Double> parseFrames(String output) {
+		List<Double> frames = new ArrayList<Double>();
+		String[] lines = output.split("\n");
+		int start = -1;
+		for (int i = 0; i < lines.length; i++) {
+			String line = lines[i].trim();
+			if (line.equals("---PROFILEDATA---")) {
+				if (start < 0) {
+					start = i + 1;
+				} else {
+					parseFrameStats(lines, start, i, frames);
+					start = -1;
+				}
+			} else if (line.startsWith("Profile data in ms:")) {
+				i = parseLegacy(lines, i + 1, frames) - 1;
+			}
+		}
+		return frames;
+	}
+
+	private static void parseFrameStats(String[] lines, int from, int to, List<Double> frames) {
+		if (from >= to) {
+			return;
+		}
+		List<String> header = Arrays.asList(lines[from].trim().split(","));
+		int flags = header.indexOf("Flags");
+		int intended = header.indexOf("IntendedVsync");
+		int completed = header.indexOf("FrameCompleted");
+		if (flags < 0 || intended < 0 || completed < 0) {
+			return;
+		}
+		for (int i = from + 1; i < to; i++) {
+			String[] row = lines[i].trim().split(",");
+			if (row.length <= Math.max(intended, completed)) {
+				continue;
+			}
+			//frames with flags set are the first of a window or were skipped
+			if (Long.parseLong(row[flags]) != 0) {
+				continue;
+			}
+			long nanos = Long.parseLong(row[completed]) - Long.parseLong(row[intended]);
+			if (nanos > 0) {
+				frames.add(nanos / 1000000.0);
+			}
+		}
+	}
+
+	/**
+	 * @return the line after the table
+	 */
+	private static int parseLegacy(String[] lines, int from, List<Double> frames) {
+		int i = from;
+		boolean header = false;
+		for (; i < lines.length; i++) {
+			String line = lines[i].trim();
+			if (!header) {
+				header = line.startsWith("Draw");
+				continue;
+			}
+			String[] columns = line.split("\\s+");
+			if (line.length() == 0 || columns.length < 3) {
+				break;
+			}
+			try {
+				double sum = 0;
+				for (String column : columns) {
+					sum += Double.parseDouble(column);
+				}
+				frames.add(sum);
+			} catch (NumberFormatException e) {
+				break;
+			}
+		}
+		return i;
+	}
+
+	static double percentile(double[] sorted, int percent) {
+		int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+
+	private static double[] sorted(List<Double> values) {
+		double[] result = new double[values.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = values.get(i);
+		}
+		Arrays.sort(result);
+		return result;
+	}
+
+	private static String format(double value) {
+		return String.format("%.1f", value);
+	}
+
+	static String read(File file) throws IOException {
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		try {
+			StringBuilder sb = new StringBuilder();
+			String line;
+			while ((line = in.readLine()) != null) {
+				sb.append(line).append('\n');
+			}
+			return sb.toString();
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package com.sherchen.realclock.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drives the sample app on a device through adb and reports the cold start
+ * and the frame times of a scenario, "main" for the single clock of
+ * MainActivity, "stress" for the many-clock layout, and "sprites" and
+ * "rotate" for a screen wide clock with its second hand drawn from the hand
+ * sprites or rotated every frame.
+ * <pre>
+ * java com.sherchen.realclock.tools.ClockBenchmark startup|frames
+ *     [--scenario=main|stress|sprites|rotate] [--runs=10] [--seconds=10] [--compile=speed]
+ *     [--serial=&lt;device&gt;] [--out=bin/benchmark]
+ * </pre>
+ * startup launches the activity cold the given number of runs, frames lets
+ * it run for the given seconds and reads its frame statistics. --compile
+ * sets the compiler filter before measuring, to compare e.g. verify and
+ * speed. Compiler filters need a device with API 24 or later, the launch
+ * and frame times work on all releases.
+ * <p>
+ * The raw outputs are kept in the out directory and can be reported again
+ * with {@link BenchmarkReport} without a device.
+ */
+public class ClockBenchmark {
+
+	private static final String PACKAGE = "com.sherchen.realclock";
+	private static final String ACTIVITY = PACKAGE + "/.MainActivity";
+
+	private final String mSerial;
+	private final File mOutDir;
+
+	public ClockBenchmark(String serial, File outDir) {
+		mSerial = serial;
+		mOutDir = outDir;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("usage: ClockBenchmark startup|frames [--scenario=main|stress|sprites|rotate]"
+					+ " [--runs=10] [--seconds=10] [--compile=<filter>] [--serial=<device>]"
+					+ " [--out=bin/benchmark]");
+			System.exit(1);
+		}
+		String command = args[0];
+		String scenario = "main";
+		int runs = 10;
+		int seconds = 10;
+		String compile = null;
+		String serial = null;
+		File out = new File("bin/benchmark");
+		for (int i = 1; i < args.length; i++) {
+			String arg = args[i];
+			int eq = arg.indexOf('=');
+			if (!arg.startsWith("--") || eq < 0) {
+				throw new IllegalArgumentException("bad argument " + arg);
+			}
+			String key = arg.substring(2, eq);
+			String value = arg.substring(eq + 1);
+			if (key.equals("scenario")) {
+				scenario = value;
+			} else if (key.equals("runs")) {
+				runs = Integer.parseInt(value);
+			} else if (key.equals("seconds")) {
+				seconds = Integer.parseInt(value);
+			} else if (key.equals("compile")) {
+				compile = value.length() == 0 ? null : value;
+			} else if (key.equals("serial")) {
+				serial = value.length() == 0 ? null : value;
+			} else if (key.equals("out")) {
+				out = new File(value);
+			} else {
+				throw new IllegalArgumentException("unknown option " + arg);
+			}
+		}
+		if (!scenario.equals("main") && !scenario.equals("stress")
+				&& !scenario.equals("sprites") && !scenario.equals("rotate")) {
+			throw new IllegalArgumentException("unknown scenario " + scenario);
+		}
+
+		ClockBenchmark benchmark = new ClockBenchmark(serial, out);
+		if (compile != null) {
+			benchmark.compile(compile);
+		}
+		if (command.equals("startup")) {
+			benchmark.startup(scenario, runs).print(scenario, System.out);
+		} else if (command.equals("frames")) {
+			benchmark.frames(scenario, seconds).print(scenario, System.out);
+		} else {
+			throw new IllegalArgumentException("unknown command " + command);
+		}
+	}
+
+	/**
+	 * Cold start, the process is killed before every launch.
+	 */
+	public BenchmarkReport startup(String scenario, int runs) throws IOException {
+		BenchmarkReport report = new BenchmarkReport();
+		for (int i = 0; i < runs; i++) {
+			String output = shell(launch(scenario));
+			save(scenario + "-startup-" + i + ".txt", output);
+			report.add(output);
+		}
+		if (report.getStartupCount() == 0) {
+			throw new IOException("no launch time reported by am start -W");
+		}
+		return report;
+	}
+
+	/**
+	 * Steady state, the frames after the first drawn second.
+	 */
+	public BenchmarkReport frames(String scenario, int seconds) throws IOException {
+		//releases before API 23 only keep the frame times with profiling on
+		shell("setprop debug.hwui.profile true");
+		shell(launch(scenario));
+		sleep(2000);
+		shell("dumpsys gfxinfo " + PACKAGE + " reset");
+		sleep(seconds * 1000L);
+		String output = shell("dumpsys gfxinfo " + PACKAGE + " framestats");
+		save(scenario + "-frames.txt", output);
+		BenchmarkReport report = new BenchmarkReport();
+		report.add(output);
+		return report;
+	}
+
+	public void compile(String filter) throws IOException {
+		String output = shell("cmd package compile -f -m " + filter + " " + PACKAGE);
+		if (!output.contains("Success")) {
+			throw new IOException("cannot compile with " + filter + ": " + output.trim());
+		}
+	}
+
+	private static String launch(String scenario) {
+		String command = "am start -W -S -n " + ACTIVITY;
+		if (scenario.equals("stress")) {
+			command += " --es layout stress";
+		} else if (scenario.equals("sprites") || scenario.equals("rotate")) {
+			//the same layout, only the way the second hand is drawn differs
+			command += " --es layout sprites --ez second_sprites " + scenario.equals("sprites");
+		}
+		return command;
+	}
+
+	private String shell(String command) throws IOException {
+		List<String> args = new ArrayList<String>();
+		args.add("adb");
+		if (mSerial != null) {
+			args.add("-s");
+			args.add(mSerial);
+		}
+		args.add("shell");
+		args.add(command);
+		Process process = new ProcessBuilder(args).redirectErrorStream(true).start();
+		String output = readAll(process.getInputStream());
+		try {
+			int exit = process.waitFor();
+			if (exit != 0) {
+				throw new IOException("adb shell " + command + " failed with " + exit + ": " + output.trim());
+			}
+		} catch (InterruptedException e) {
+			throw new IOException("interrupted while running " + command);
+		}
+		return output;
+	}
+
+	private void save(String name, String output) throws IOException {
+		if (!mOutDir.isDirectory() && !mOutDir.mkdirs()) {
+			throw new IOException("cannot create " + mOutDir);
+		}
+		Writer out = new OutputStreamWriter(new FileOutputStream(new File(mOutDir, name)), "UTF-8");
+		try {
+			out.write(output);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static String readAll(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				bytes.write(buffer, 0, read);
+			}
+			//adb of old releases ends the lines with \r\n
+			return bytes.toString("UTF-8").replace("\r", "");
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
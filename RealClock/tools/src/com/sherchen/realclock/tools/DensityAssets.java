@@ -0,0 +1,287 @@
+package com.sherchen.realclock.tools;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Build step which turns the master images of the clock faces into one
+ * correctly sized image per density bucket, so the framework decodes them
+ * 1:1 instead of scaling at load time.
+ * <p>
+ * The masters live in art/&lt;bucket&gt;/name.png, the bucket tells the
+ * density the image was drawn for. A master is written to every bucket of
+ * res/drawable-&lt;bucket&gt;/. The buckets above the master are scaled up
+ * once here instead of on every load, they are no sharper than the master
+ * would be scaled by the device: a face meant to be crisp on xxhdpi needs
+ * its master drawn for xxhdpi. If a name has masters in several buckets,
+ * the highest one is used.
+ * <p>
+ * The default format png8 reduces each image to a palette of 256 colors with
+ * alpha, which every API level decodes. An image which would lose visibly or
+ * not get smaller is written as truecolor png. --format=png writes truecolor
+ * only, --format=webp writes webp through the cwebp tool, which needs
+ * minSdkVersion 18 for images with alpha.
+ * <pre>
+ * java com.sherchen.realclock.tools.DensityAssets art res [--format=png8|png|webp] [--quality=90]
+ * </pre>
+ */
+public class DensityAssets {
+
+	private static final String[] BUCKETS = { "ldpi", "mdpi", "hdpi", "xhdpi", "xxhdpi" };
+	private static final float[] SCALES = { 0.75f, 1.0f, 1.5f, 2.0f, 3.0f };
+
+	static final String FORMAT_PNG = "png";
+	static final String FORMAT_PNG8 = "png8";
+	static final String FORMAT_WEBP = "webp";
+	//of the mean channel difference, above it a palette shows banding
+	static final double MAX_PALETTE_ERROR = 1.5;
+
+	private final File mArtDir;
+	private final File mResDir;
+	private final String mFormat;
+	private final int mQuality;
+
+	public DensityAssets(File artDir, File resDir, String format, int quality) {
+		mArtDir = artDir;
+		mResDir = resDir;
+		mFormat = format;
+		mQuality = quality;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: DensityAssets <art dir> <res dir> [--format=png8|png|webp] [--quality=90]");
+			System.exit(1);
+		}
+		String format = FORMAT_PNG8;
+		int quality = 90;
+		for (int i = 2; i < args.length; i++) {
+			if (args[i].startsWith("--format=")) {
+				format = args[i].substring("--format=".length());
+			} else if (args[i].startsWith("--quality=")) {
+				quality = Integer.parseInt(args[i].substring("--quality=".length()));
+			}
+		}
+		if (!FORMAT_PNG.equals(format) && !FORMAT_PNG8.equals(format) && !FORMAT_WEBP.equals(format)) {
+			System.err.println("unknown format " + format);
+			System.exit(1);
+		}
+		int written = new DensityAssets(new File(args[0]), new File(args[1]), format, quality).run();
+		System.out.println("DensityAssets: " + written + " images written");
+	}
+
+	/**
+	 * @return the number of images written, images newer than their master are kept
+	 */
+	public int run() throws IOException {
+		int written = 0;
+		Set<String> done = new HashSet<String>();
+		//the highest master of a name wins
+		for (int i = BUCKETS.length - 1; i >= 0; i--) {
+			File dir = new File(mArtDir, BUCKETS[i]);
+			File[] masters = dir.listFiles();
+			if (masters == null) {
+				continue;
+			}
+			for (File master : masters) {
+				if (master.getName().endsWith(".png") && done.add(master.getName())) {
+					written += generate(master, SCALES[i]);
+				}
+			}
+		}
+		return written;
+	}
+
+	private int generate(File master, float masterScale) throws IOException {
+		String name = master.getName().substring(0, master.getName().length() - ".png".length());
+		String extension = FORMAT_WEBP.equals(mFormat) ? FORMAT_WEBP : FORMAT_PNG;
+		BufferedImage source = null;
+		int written = 0;
+		for (int i = 0; i < BUCKETS.length; i++) {
+			File dir = new File(mResDir, "drawable-" + BUCKETS[i]);
+			File out = new File(dir, name + "." + extension);
+			//a switch of format must not leave the other file behind as a duplicate resource
+			File other = new File(dir, name + "." + (FORMAT_WEBP.equals(extension) ? FORMAT_PNG : FORMAT_WEBP));
+			if (other.exists() && !other.delete()) {
+				throw new IOException("cannot delete " + other);
+			}
+			if (out.exists() && out.lastModified() >= master.lastModified()) {
+				continue;
+			}
+
+			if (!dir.isDirectory() && !dir.mkdirs()) {
+				throw new IOException("cannot create " + dir);
+			}
+			boolean own = SCALES[i] == masterScale;
+			if (own && FORMAT_PNG.equals(mFormat)) {
+				//the master's own bucket, keep the file as it was drawn
+				copy(master, out);
+				written++;
+				continue;
+			}
+
+			if (source == null) {
+				source = ImageIO.read(master);
+				if (source == null) {
+					throw new IOException("cannot read " + master);
+				}
+			}
+			float scale = SCALES[i] / masterScale;
+			int width = Math.max(1, Math.round(source.getWidth() * scale));
+			int height = Math.max(1, Math.round(source.getHeight() * scale));
+			BufferedImage image = resize(source, width, height);
+			if (FORMAT_WEBP.equals(mFormat)) {
+				writeWebp(image, out);
+			} else if (FORMAT_PNG8.equals(mFormat)) {
+				byte[] truecolor = encode(image);
+				if (own) {
+					//the same pixels, the file as drawn may be the smaller one
+					byte[] drawn = read(master);
+					if (drawn.length < truecolor.length) {
+						truecolor = drawn;
+					}
+				}
+				writePng8(image, out, truecolor);
+			} else {
+				ImageIO.write(image, FORMAT_PNG, out);
+			}
+			written++;
+		}
+		return written;
+	}
+
+	/**
+	 * Write the image with a palette if that keeps it close and makes it
+	 * smaller than the truecolor encoding, that one otherwise.
+	 */
+	static void writePng8(BufferedImage image, File out, byte[] truecolor) throws IOException {
+		byte[] encoded = truecolor;
+		BufferedImage palette = PaletteQuantizer.quantize(image);
+		if (PaletteQuantizer.meanError(image, palette) <= MAX_PALETTE_ERROR) {
+			byte[] indexed = encode(palette);
+			if (indexed.length < truecolor.length) {
+				encoded = indexed;
+			}
+		}
+		OutputStream stream = new FileOutputStream(out);
+		try {
+			stream.write(encoded);
+		} finally {
+			stream.close();
+		}
+	}
+
+	private static byte[] encode(BufferedImage image) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		if (!ImageIO.write(image, FORMAT_PNG, bytes)) {
+			throw new IOException("no png writer");
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Scale in steps of at most one half when shrinking, so thin hands keep
+	 * their weight, and in one bicubic step when growing. The same size
+	 * returns the source.
+	 */
+	static BufferedImage resize(BufferedImage source, int width, int height) {
+		BufferedImage current = toPremultiplied(source);
+		int w = current.getWidth();
+		int h = current.getHeight();
+		if (w == width && h == height) {
+			return source;
+		}
+		do {
+			w = w / 2 >= width ? w / 2 : width;
+			h = h / 2 >= height ? h / 2 : height;
+			BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+			Graphics2D g = next.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+			g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			g.drawImage(current, 0, 0, w, h, null);
+			g.dispose();
+			current = next;
+		} while (w != width || h != height);
+
+		//png has no premultiplied alpha
+		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = result.createGraphics();
+		g.drawImage(current, 0, 0, null);
+		g.dispose();
+		return result;
+	}
+
+	private static BufferedImage toPremultiplied(BufferedImage source) {
+		if (source.getType() == BufferedImage.TYPE_INT_ARGB_PRE) {
+			return source;
+		}
+		BufferedImage image = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D g = image.createGraphics();
+		g.drawImage(source, 0, 0, null);
+		g.dispose();
+		return image;
+	}
+
+	private static byte[] read(File file) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				bytes.write(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void copy(File from, File to) throws IOException {
+		InputStream in = new FileInputStream(from);
+		try {
+			OutputStream out = new FileOutputStream(to);
+			try {
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = in.read(buffer)) > 0) {
+					out.write(buffer, 0, read);
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private void writeWebp(BufferedImage image, File out) throws IOException {
+		File png = File.createTempFile("density", ".png");
+		try {
+			ImageIO.write(image, FORMAT_PNG, png);
+			Process process = new ProcessBuilder("cwebp", "-quiet", "-q", String.valueOf(mQuality),
+					"-alpha_q", "100", png.getPath(), "-o", out.getPath())
+					.redirectErrorStream(true).start();
+			int exit = process.waitFor();
+			if (exit != 0) {
+				throw new IOException("cwebp failed with " + exit + " for " + out);
+			}
+		} catch (InterruptedException e) {
+			throw new IOException("interrupted while writing " + out);
+		} finally {
+			png.delete();
+		}
+	}
+}
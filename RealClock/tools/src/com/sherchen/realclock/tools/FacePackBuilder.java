@@ -0,0 +1,169 @@
+package com.sherchen.realclock.tools;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Writes a face pack as read by com.sherchen.realclock.FacePack: the layout
+ * values of the face followed by one png atlas of all its images.
+ * <pre>
+ * java com.sherchen.realclock.tools.FacePackBuilder out.rcfp --dial=bg.png --brand=brand.png
+ *     --hour=hour.png --minute=minute.png --second=second.png
+ *     [--brand-margin-top=5] [--hour-offset=8] [--minute-offset=10] [--second-offset=0]
+ * </pre>
+ * The margins and offsets are in dp like the styleable attributes.
+ */
+public class FacePackBuilder {
+
+	private static final int MAGIC = 0x52434650;//RCFP
+	private static final int VERSION = 1;
+
+	//same order as FaceAtlas.SPRITE_*
+	private static final String[] SPRITES = { "dial", "brand", "hour", "minute", "second" };
+	//keeps filtering from bleeding one sprite into the next
+	private static final int PADDING = 2;
+
+	private static class Sprite {
+		final int type;
+		final BufferedImage image;
+		int x;
+		int y;
+
+		Sprite(int type, BufferedImage image) {
+			this.type = type;
+			this.image = image;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: FacePackBuilder <out> --dial=<png> [--brand=<png>] [--hour=<png>]"
+					+ " [--minute=<png>] [--second=<png>] [--brand-margin-top=dp] [--hour-offset=dp]"
+					+ " [--minute-offset=dp] [--second-offset=dp]");
+			System.exit(1);
+		}
+		List<Sprite> sprites = new ArrayList<Sprite>();
+		int brandMarginTop = 5;
+		int hourOffset = 8;
+		int minuteOffset = 10;
+		int secondOffset = 0;
+		for (int i = 1; i < args.length; i++) {
+			String arg = args[i];
+			int eq = arg.indexOf('=');
+			if (!arg.startsWith("--") || eq < 0) {
+				throw new IllegalArgumentException("bad argument " + arg);
+			}
+			String key = arg.substring(2, eq);
+			String value = arg.substring(eq + 1);
+			if (key.equals("brand-margin-top")) {
+				brandMarginTop = Integer.parseInt(value);
+			} else if (key.equals("hour-offset")) {
+				hourOffset = Integer.parseInt(value);
+			} else if (key.equals("minute-offset")) {
+				minuteOffset = Integer.parseInt(value);
+			} else if (key.equals("second-offset")) {
+				secondOffset = Integer.parseInt(value);
+			} else {
+				int type = indexOf(key);
+				BufferedImage image = ImageIO.read(new File(value));
+				if (image == null) {
+					throw new IOException("cannot read " + value);
+				}
+				sprites.add(new Sprite(type, image));
+			}
+		}
+
+		BufferedImage atlas = pack(sprites);
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		ImageIO.write(atlas, "png", png);
+
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(args[0]));
+		try {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeShort(brandMarginTop);
+			out.writeShort(hourOffset);
+			out.writeShort(minuteOffset);
+			out.writeShort(secondOffset);
+			out.writeByte(sprites.size());
+			for (Sprite sprite : sprites) {
+				out.writeByte(sprite.type);
+				out.writeShort(sprite.x);
+				out.writeShort(sprite.y);
+				out.writeShort(sprite.image.getWidth());
+				out.writeShort(sprite.image.getHeight());
+			}
+			out.writeInt(png.size());
+			png.writeTo(out);
+		} finally {
+			out.close();
+		}
+		System.out.println("FacePackBuilder: " + args[0] + " " + atlas.getWidth() + "x" + atlas.getHeight());
+	}
+
+	private static int indexOf(String key) {
+		for (int i = 0; i < SPRITES.length; i++) {
+			if (SPRITES[i].equals(key)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("unknown sprite " + key);
+	}
+
+	/**
+	 * Shelf packing, the tallest sprites first. The width of the atlas is the
+	 * widest sprite or the square root of the total area, whichever is larger.
+	 */
+	static BufferedImage pack(List<Sprite> sprites) {
+		List<Sprite> sorted = new ArrayList<Sprite>(sprites);
+		Collections.sort(sorted, new Comparator<Sprite>() {
+			@Override
+			public int compare(Sprite a, Sprite b) {
+				return b.image.getHeight() - a.image.getHeight();
+			}
+		});
+		long area = 0;
+		int maxWidth = 0;
+		for (Sprite sprite : sorted) {
+			int w = sprite.image.getWidth() + PADDING;
+			area += (long) w * (sprite.image.getHeight() + PADDING);
+			maxWidth = Math.max(maxWidth, w);
+		}
+		int width = Math.max(maxWidth, (int) Math.ceil(Math.sqrt(area)));
+
+		int x = 0;
+		int y = 0;
+		int shelfHeight = 0;
+		for (Sprite sprite : sorted) {
+			int w = sprite.image.getWidth() + PADDING;
+			if (x + w > width) {
+				x = 0;
+				y += shelfHeight;
+				shelfHeight = 0;
+			}
+			sprite.x = x;
+			sprite.y = y;
+			x += w;
+			shelfHeight = Math.max(shelfHeight, sprite.image.getHeight() + PADDING);
+		}
+
+		BufferedImage atlas = new BufferedImage(width, y + shelfHeight, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = atlas.createGraphics();
+		for (Sprite sprite : sorted) {
+			g.drawImage(sprite.image, sprite.x, sprite.y, null);
+		}
+		g.dispose();
+		return atlas;
+	}
+}
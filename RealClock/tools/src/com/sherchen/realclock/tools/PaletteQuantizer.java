@@ -0,0 +1,214 @@
+package com.sherchen.realclock.tools;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reduces an ARGB image to at most 256 colors with their alpha by median
+ * cut, for a palette png. Those decode on every API level, unlike webp with
+ * alpha, and usually take a third of the size of a truecolor png.
+ */
+final class PaletteQuantizer {
+
+	static final int MAX_COLORS = 256;
+
+	private PaletteQuantizer() {
+	}
+
+	/**
+	 * A set of the colors of the image, split along its widest channel.
+	 */
+	private static final class Box {
+		final int[] colors;
+		final int[] counts;
+		final int from;
+		final int to;
+		int channel;
+		int range;
+		long pixels;
+
+		Box(int[] colors, int[] counts, int from, int to) {
+			this.colors = colors;
+			this.counts = counts;
+			this.from = from;
+			this.to = to;
+			int best = 0;
+			for (int shift = 0; shift < 32; shift += 8) {
+				int min = 255;
+				int max = 0;
+				for (int i = from; i < to; i++) {
+					int c = (colors[i] >>> shift) & 0xff;
+					min = Math.min(min, c);
+					max = Math.max(max, c);
+				}
+				if (max - min > best) {
+					best = max - min;
+					channel = shift;
+				}
+			}
+			range = best;
+			for (int i = from; i < to; i++) {
+				pixels += counts[i];
+			}
+		}
+
+		boolean canSplit() {
+			return to - from > 1 && range > 0;
+		}
+
+		int average() {
+			long a = 0;
+			long r = 0;
+			long g = 0;
+			long b = 0;
+			for (int i = from; i < to; i++) {
+				int c = colors[i];
+				long n = counts[i];
+				a += (c >>> 24) * n;
+				r += ((c >> 16) & 0xff) * n;
+				g += ((c >> 8) & 0xff) * n;
+				b += (c & 0xff) * n;
+			}
+			long half = pixels / 2;
+			return (int) ((a + half) / pixels) << 24 | (int) ((r + half) / pixels) << 16
+					| (int) ((g + half) / pixels) << 8 | (int) ((b + half) / pixels);
+		}
+	}
+
+	/**
+	 * @return the image with an indexed color model, the pixels mapped to the palette
+	 */
+	static BufferedImage quantize(BufferedImage source) {
+		int width = source.getWidth();
+		int height = source.getHeight();
+		int[] argb = source.getRGB(0, 0, width, height, null, 0, width);
+
+		//fully transparent pixels are one color whatever their rgb
+		Map<Integer, int[]> histogram = new HashMap<Integer, int[]>();
+		for (int i = 0; i < argb.length; i++) {
+			if ((argb[i] >>> 24) == 0) {
+				argb[i] = 0;
+			}
+			int[] count = histogram.get(argb[i]);
+			if (count == null) {
+				histogram.put(argb[i], new int[] { 1 });
+			} else {
+				count[0]++;
+			}
+		}
+		int[] colors = new int[histogram.size()];
+		int[] counts = new int[colors.length];
+		int n = 0;
+		for (Map.Entry<Integer, int[]> e : histogram.entrySet()) {
+			colors[n] = e.getKey();
+			counts[n] = e.getValue()[0];
+			n++;
+		}
+
+		List<Box> boxes = new ArrayList<Box>();
+		boxes.add(new Box(colors, counts, 0, colors.length));
+		while (boxes.size() < MAX_COLORS) {
+			//split the box whose widest channel weighs the most
+			Box widest = null;
+			for (Box box : boxes) {
+				if (box.canSplit() && (widest == null || (long) box.range * box.pixels > (long) widest.range * widest.pixels)) {
+					widest = box;
+				}
+			}
+			if (widest == null) {
+				break;
+			}
+			boxes.remove(widest);
+			int split = sortAndFindMedian(widest);
+			boxes.add(new Box(colors, counts, widest.from, split));
+			boxes.add(new Box(colors, counts, split, widest.to));
+		}
+
+		byte[] a = new byte[boxes.size()];
+		byte[] r = new byte[boxes.size()];
+		byte[] g = new byte[boxes.size()];
+		byte[] b = new byte[boxes.size()];
+		Map<Integer, Integer> index = new HashMap<Integer, Integer>();
+		for (int i = 0; i < boxes.size(); i++) {
+			Box box = boxes.get(i);
+			int c = box.average();
+			a[i] = (byte) (c >>> 24);
+			r[i] = (byte) (c >> 16);
+			g[i] = (byte) (c >> 8);
+			b[i] = (byte) c;
+			for (int j = box.from; j < box.to; j++) {
+				index.put(colors[j], i);
+			}
+		}
+		IndexColorModel model = new IndexColorModel(8, boxes.size(), r, g, b, a);
+		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, model);
+		byte[] pixels = new byte[argb.length];
+		for (int i = 0; i < argb.length; i++) {
+			pixels[i] = (byte) index.get(argb[i]).intValue();
+		}
+		result.getRaster().setDataElements(0, 0, width, height, pixels);
+		return result;
+	}
+
+	/**
+	 * Sort the colors of the box by its channel.
+	 * @return the first index of the upper half of the pixels, never from or to
+	 */
+	private static int sortAndFindMedian(Box box) {
+		final int shift = box.channel;
+		int length = box.to - box.from;
+		long[] keyed = new long[length];
+		for (int i = 0; i < length; i++) {
+			int j = box.from + i;
+			//the channel value on top, the index below it
+			keyed[i] = (long) ((box.colors[j] >>> shift) & 0xff) << 32 | j;
+		}
+		Arrays.sort(keyed);
+		int[] colors = new int[length];
+		int[] counts = new int[length];
+		for (int i = 0; i < length; i++) {
+			int j = (int) keyed[i];
+			colors[i] = box.colors[j];
+			counts[i] = box.counts[j];
+		}
+		System.arraycopy(colors, 0, box.colors, box.from, length);
+		System.arraycopy(counts, 0, box.counts, box.from, length);
+
+		long half = box.pixels / 2;
+		long seen = 0;
+		for (int i = box.from; i < box.to - 1; i++) {
+			seen += box.counts[i];
+			if (seen >= half) {
+				return i + 1;
+			}
+		}
+		return box.to - 1;
+	}
+
+	/**
+	 * @return the mean difference of the channels of the two images, alpha
+	 * weighted so that the color of nearly transparent pixels hardly counts
+	 */
+	static double meanError(BufferedImage expected, BufferedImage actual) {
+		int width = expected.getWidth();
+		int height = expected.getHeight();
+		int[] e = expected.getRGB(0, 0, width, height, null, 0, width);
+		int[] a = actual.getRGB(0, 0, width, height, null, 0, width);
+		double sum = 0;
+		for (int i = 0; i < e.length; i++) {
+			int ea = e[i] >>> 24;
+			int aa = a[i] >>> 24;
+			double weight = Math.max(ea, aa) / 255.0;
+			int color = Math.abs(((e[i] >> 16) & 0xff) - ((a[i] >> 16) & 0xff))
+					+ Math.abs(((e[i] >> 8) & 0xff) - ((a[i] >> 8) & 0xff))
+					+ Math.abs((e[i] & 0xff) - (a[i] & 0xff));
+			sum += Math.abs(ea - aa) + weight * color / 3.0;
+		}
+		return sum / e.length;
+	}
+}
@@ -0,0 +1,100 @@
+package com.sherchen.realclock.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BenchmarkReportTest {
+
+	private static final String AM_START = "Starting: Intent { cmp=com.sherchen.realclock/.MainActivity }\n"
+			+ "Status: ok\n"
+			+ "Activity: com.sherchen.realclock/.MainActivity\n"
+			+ "ThisTime: 412\n"
+			+ "TotalTime: 412\n"
+			+ "WaitTime: 430\n"
+			+ "Complete\n";
+
+	//two frames of 10ms and 20ms, and a first frame with its flag set
+	private static final String FRAMESTATS = "Applications Graphics Acceleration Info:\n"
+			+ "---PROFILEDATA---\n"
+			+ "Flags,IntendedVsync,Vsync,OldestInputEvent,NewestInputEvent,FrameCompleted,\n"
+			+ "1,1000000000,1000000000,0,0,1090000000,\n"
+			+ "0,2000000000,2000000000,0,0,2010000000,\n"
+			+ "0,3000000000,3000000000,0,0,3020000000,\n"
+			+ "---PROFILEDATA---\n"
+			+ "View hierarchy:\n";
+
+	private static final String LEGACY = "Profile data in ms:\n"
+			+ "\n"
+			+ "\tcom.sherchen.realclock/com.sherchen.realclock.MainActivity/android.view.ViewRootImpl@4a3c1e08\n"
+			+ "\tDraw\tProcess\tExecute\n"
+			+ "\t1.50\t3.00\t0.50\n"
+			+ "\t2.00\t12.00\t4.00\n"
+			+ "\n"
+			+ "View hierarchy:\n";
+
+	@Test
+	public void parsesTheTotalTimeOfAmStart() {
+		assertEquals(412.0, BenchmarkReport.parseStartup(AM_START), 0);
+	}
+
+	@Test
+	public void noStartupWithoutTotalTime() {
+		assertEquals(-1.0, BenchmarkReport.parseStartup("Status: ok\nComplete\n"), 0);
+	}
+
+	@Test
+	public void parsesFramestatsWithoutFlaggedFrames() {
+		List<Double> frames = BenchmarkReport.parseFrames(FRAMESTATS);
+		assertEquals(2, frames.size());
+		assertEquals(10.0, frames.get(0), 1e-9);
+		assertEquals(20.0, frames.get(1), 1e-9);
+	}
+
+	@Test
+	public void sumsTheColumnsOfLegacyProfileData() {
+		List<Double> frames = BenchmarkReport.parseFrames(LEGACY);
+		assertEquals(2, frames.size());
+		assertEquals(5.0, frames.get(0), 1e-9);
+		assertEquals(18.0, frames.get(1), 1e-9);
+	}
+
+	@Test
+	public void percentileRoundsUpToARank() {
+		double[] sorted = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+		assertEquals(5.0, BenchmarkReport.percentile(sorted, 50), 0);
+		assertEquals(9.0, BenchmarkReport.percentile(sorted, 90), 0);
+		assertEquals(10.0, BenchmarkReport.percentile(sorted, 99), 0);
+		assertEquals(1.0, BenchmarkReport.percentile(new double[] { 1 }, 95), 0);
+	}
+
+	@Test
+	public void reportsStartupsAndJankyFrames() {
+		BenchmarkReport report = new BenchmarkReport();
+		report.add(AM_START);
+		report.add(AM_START.replace("412", "300"));
+		report.add(FRAMESTATS);
+		assertEquals(2, report.getStartupCount());
+		assertEquals(2, report.getFrameCount());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		report.print("main", new PrintStream(bytes, true));
+		String out = bytes.toString();
+		assertTrue(out, out.contains("main startup runs=2 median=300.0ms min=300.0ms max=412.0ms"));
+		//only the 20ms frame misses a 60Hz vsync
+		assertTrue(out, out.contains("main frames count=2 p50=10.0ms"));
+		assertTrue(out, out.contains("janky=1 (50.0%)"));
+	}
+
+	@Test
+	public void reportsNoData() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new BenchmarkReport().print("stress", new PrintStream(bytes, true));
+		assertEquals("stress no data", bytes.toString().trim());
+	}
+}